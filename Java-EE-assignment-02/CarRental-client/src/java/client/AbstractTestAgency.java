@@ -2,10 +2,10 @@ package client;
 
 import java.text.ParseException;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import rental.Reservation;
 
 /**
@@ -35,7 +35,7 @@ import rental.Reservation;
  * Modifier to indicate that the according command will fail
  */
 public abstract class AbstractTestAgency<ReservationSession, ManagerSession> extends AbstractTesting {
-    protected Map<String, ReservationSession> sessions = new HashMap<String, ReservationSession>();
+    protected Map<String, ReservationSession> sessions = new ConcurrentHashMap<String, ReservationSession>();
 
     /**
      * Create a new reservation session for the user with the given name.
@@ -0,0 +1,205 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.InitialContext;
+import rental.Reservation;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+import session.ManagerSessionRemote;
+import session.ReservationSessionRemote;
+
+/**
+ * Stress test of concurrent confirmations against a deployed application.
+ *
+ * In every round, a number of sessions quote the same car types of one company for
+ * the same period and confirm at the same moment. Half of the sessions quote the car
+ * types in the opposite order, so a session that locks its cars out of order would
+ * deadlock with another one. Afterwards:
+ * <ul>
+ * <li>every session must have finished within the timeout,</li>
+ * <li>no car may have been booked twice,</li>
+ * <li>no session may have failed other than with a ReservationException.</li>
+ * </ul>
+ * The number of sessions that failed although a car of every type was left, and the
+ * number of confirmations per second, are reported per round.
+ *
+ * Run it with the companies loaded (by running the client once), for example:
+ * <pre>
+ * appclient -mainclass client.ConfirmStressTest -client CarRental-client.jar
+ * </pre>
+ * and tune it with system properties:
+ * <ul>
+ * <li>stress.threads: number of concurrent sessions (default 32)</li>
+ * <li>stress.rounds: number of rounds (default 10)</li>
+ * <li>stress.company: company to book at (default Hertz)</li>
+ * <li>stress.carTypes: comma separated car types every session quotes (default Compact,Economy)</li>
+ * <li>stress.region: region of the quotes (default Brussels)</li>
+ * <li>stress.timeoutSeconds: time a round may take (default 60)</li>
+ * </ul>
+ * Every round books a random week after the year 3000, so earlier runs do not get in
+ * the way. The exit status is 1 if any round failed.
+ */
+public class ConfirmStressTest {
+
+    private static final Logger LOG = Logger.getLogger(ConfirmStressTest.class.getName());
+    private static final int RENTAL_DAYS = 7;
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("stress.threads", 32);
+        int rounds = Integer.getInteger("stress.rounds", 10);
+        String company = System.getProperty("stress.company", "Hertz");
+        String[] carTypes = System.getProperty("stress.carTypes", "Compact,Economy").split(",");
+        String region = System.getProperty("stress.region", "Brussels");
+        long timeoutSeconds = Long.getLong("stress.timeoutSeconds", 60);
+
+        InitialContext context = new InitialContext();
+        ManagerSessionRemote manager = (ManagerSessionRemote) context.lookup(ManagerSessionRemote.class.getName());
+        int cars = Integer.MAX_VALUE;
+        for (String carType : carTypes) {
+            cars = Math.min(cars, manager.getCarIds(company, carType).size());
+        }
+
+        Random random = new Random();
+        int failedRounds = 0;
+        long confirmed = 0;
+        long totalNanos = 0;
+        for (int round = 0; round < rounds; round++) {
+            GregorianCalendar calendar = new GregorianCalendar(3000 + random.nextInt(5000), 0, 1);
+            calendar.add(GregorianCalendar.DAY_OF_YEAR, random.nextInt(358));
+            Round result = new Round(company, carTypes, region, calendar, threads, round);
+            boolean finished = result.run(timeoutSeconds);
+
+            List<String> errors = new ArrayList<>(result.errors);
+            if (!finished) {
+                errors.add("sessions still confirming after " + timeoutSeconds + "s, possibly deadlocked");
+            }
+            for (Map.Entry<String, List<Integer>> booked : result.carIdsByType.entrySet()) {
+                Set<Integer> distinct = new HashSet<>(booked.getValue());
+                if (distinct.size() < booked.getValue().size()) {
+                    errors.add((booked.getValue().size() - distinct.size()) + " double bookings of " + booked.getKey());
+                }
+            }
+            int succeeded = result.succeeded.get();
+            int missed = Math.min(threads, cars) - succeeded;
+            double seconds = result.elapsedNanos / 1e9;
+            System.out.println(String.format("Round %d: %d of %d sessions confirmed (%d failed although cars were free), "
+                    + "%.1f confirmations/s, %d errors", round, succeeded, threads, Math.max(missed, 0),
+                    succeeded / seconds, errors.size()));
+            for (String error : errors) {
+                System.err.println("  " + error);
+            }
+            if (!errors.isEmpty()) {
+                failedRounds++;
+            }
+            confirmed += succeeded;
+            totalNanos += result.elapsedNanos;
+        }
+        System.out.println(String.format("%d of %d rounds failed, %.1f confirmations/s overall",
+                failedRounds, rounds, confirmed / (totalNanos / 1e9)));
+        System.exit(failedRounds > 0 ? 1 : 0);
+    }
+
+    /**
+     * The sessions of one round, which all confirm the same period.
+     */
+    private static class Round {
+
+        final Map<String, List<Integer>> carIdsByType = Collections.synchronizedMap(new HashMap<String, List<Integer>>());
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger succeeded = new AtomicInteger();
+        volatile long elapsedNanos;
+        private final Thread[] workers;
+        private final CountDownLatch ready;
+        private final CountDownLatch go = new CountDownLatch(1);
+        private final CountDownLatch done;
+
+        Round(final String company, final String[] carTypes, final String region,
+                GregorianCalendar start, int threads, final int round) {
+            final GregorianCalendar end = (GregorianCalendar) start.clone();
+            end.add(GregorianCalendar.DAY_OF_YEAR, RENTAL_DAYS);
+            final ReservationConstraints[] constraints = new ReservationConstraints[carTypes.length];
+            for (int i = 0; i < carTypes.length; i++) {
+                constraints[i] = new ReservationConstraints(start.getTime(), end.getTime(), carTypes[i], region);
+                carIdsByType.put(carTypes[i], Collections.synchronizedList(new ArrayList<Integer>()));
+            }
+            this.workers = new Thread[threads];
+            this.ready = new CountDownLatch(threads);
+            this.done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                workers[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            confirm(company, constraints, "Stress" + round + "-" + thread, thread % 2 == 1);
+                        } catch (Throwable failure) {
+                            errors.add(failure.toString());
+                            LOG.log(Level.WARNING, "Session failed", failure);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+                workers[t].setDaemon(true);
+            }
+        }
+
+        /**
+         * @return whether all sessions finished within the timeout
+         */
+        boolean run(long timeoutSeconds) throws InterruptedException {
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            boolean finished = done.await(timeoutSeconds, TimeUnit.SECONDS);
+            elapsedNanos = System.nanoTime() - start;
+            return finished;
+        }
+
+        private void confirm(String company, ReservationConstraints[] constraints, String renter, boolean reversed)
+                throws Exception {
+            ReservationSessionRemote session;
+            try {
+                session = (ReservationSessionRemote) new InitialContext().lookup(ReservationSessionRemote.class.getName());
+                session.setRenterName(renter);
+                for (int i = 0; i < constraints.length; i++) {
+                    session.createQuote(company, constraints[reversed ? constraints.length - 1 - i : i]);
+                }
+            } finally {
+                ready.countDown();
+            }
+            go.await();
+            List<Reservation> reservations;
+            try {
+                reservations = session.confirmQuotes();
+            } catch (ReservationException e) {
+                // the session rolled back: expected if no car was left or its cars were booked
+                // concurrently, an error if the database gave up on it, as on a deadlock
+                if (e.getCause() != null && !(e.getCause() instanceof ReservationException)) {
+                    throw e;
+                }
+                return;
+            }
+            succeeded.incrementAndGet();
+            for (Reservation reservation : reservations) {
+                carIdsByType.get(reservation.getCarType()).add(reservation.getCarId());
+            }
+        }
+    }
+}
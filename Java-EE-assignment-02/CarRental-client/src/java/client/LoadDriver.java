@@ -0,0 +1,193 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replays a test script as a load test.
+ *
+ * The script is split per client (the first token of every line) and every client
+ * replays its own lines in its own thread, so the clients run concurrently while the
+ * order of the commands of a single client is kept. The clients are started spread
+ * over the ramp-up period, wait the think time between two commands and repeat their
+ * lines a number of times. Afterwards the throughput and latency percentiles of every
+ * command are printed.
+ *
+ * Since the clients interleave and repeat their bookings, commands may succeed or
+ * fail other than the script expects. Such outcomes are counted instead of reported
+ * one by one.
+ */
+final class LoadDriver {
+
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+	private final int loops;
+	private final long thinkTimeMillis;
+	private final long rampUpMillis;
+	private final ConcurrentHashMap<String, CommandStatistics> statisticsByCommand = new ConcurrentHashMap<String, CommandStatistics>();
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	LoadDriver(int loops, long thinkTimeMillis, long rampUpMillis) {
+		if (loops < 1 || thinkTimeMillis < 0 || rampUpMillis < 0)
+			throw new IllegalArgumentException("Illegal load settings");
+		this.loops = loops;
+		this.thinkTimeMillis = thinkTimeMillis;
+		this.rampUpMillis = rampUpMillis;
+	}
+
+	/**
+	 * Load mode is switched on with -Dload.loops=N, the think time and ramp-up period
+	 * are set with -Dload.thinkTimeMillis and -Dload.rampUpMillis.
+	 *
+	 * @return the load driver configured by the system properties, or null if the
+	 * 		script should be run once, line by line
+	 */
+	static LoadDriver fromSystemProperties() {
+		Integer loops = Integer.getInteger("load.loops");
+		if (loops == null)
+			return null;
+		return new LoadDriver(loops, Long.getLong("load.thinkTimeMillis", 0), Long.getLong("load.rampUpMillis", 0));
+	}
+
+	/*******
+	 * RUN *
+	 *******/
+
+	void run(final AbstractTesting testing, List<AbstractTesting.ScriptLine> script) throws Exception {
+		Map<String, List<AbstractTesting.ScriptLine>> linesByClient = new LinkedHashMap<String, List<AbstractTesting.ScriptLine>>();
+		for (AbstractTesting.ScriptLine line : script) {
+			List<AbstractTesting.ScriptLine> lines = linesByClient.get(line.name);
+			if (lines == null) {
+				lines = new ArrayList<AbstractTesting.ScriptLine>();
+				linesByClient.put(line.name, lines);
+			}
+			lines.add(line);
+		}
+
+		final List<Exception> errors = new ArrayList<Exception>();
+		List<Thread> clients = new ArrayList<Thread>();
+		int client = 0;
+		for (final List<AbstractTesting.ScriptLine> lines : linesByClient.values()) {
+			final long startDelayMillis = rampUpMillis * client++ / linesByClient.size();
+			clients.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(startDelayMillis);
+						replay(testing, lines);
+					} catch (Exception e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			}, "load-" + lines.get(0).name));
+		}
+
+		long start = System.nanoTime();
+		for (Thread thread : clients)
+			thread.start();
+		for (Thread thread : clients)
+			thread.join();
+		long elapsed = System.nanoTime() - start;
+
+		printReport(linesByClient.size(), elapsed);
+		if (!errors.isEmpty())
+			throw errors.get(0);
+	}
+
+	private void replay(AbstractTesting testing, List<AbstractTesting.ScriptLine> lines) throws InterruptedException {
+		for (int loop = 0; loop < loops; loop++) {
+			for (AbstractTesting.ScriptLine line : lines) {
+				if (thinkTimeMillis > 0)
+					Thread.sleep(thinkTimeMillis);
+				long start = System.nanoTime();
+				boolean failed;
+				try {
+					failed = testing.process(line) != null;
+				} catch (IllegalArgumentException iae) {
+					System.err.println(String.format("Exception caused by script line %d (%s): %s", line.number, line.text, iae.getMessage()));
+					throw iae;
+				}
+				long latency = System.nanoTime() - start;
+				statisticsFor(line.cmd).record(latency, failed == line.shouldFail());
+			}
+		}
+	}
+
+	private CommandStatistics statisticsFor(String cmd) {
+		CommandStatistics statistics = statisticsByCommand.get(cmd);
+		if (statistics == null) {
+			statistics = new CommandStatistics();
+			CommandStatistics existing = statisticsByCommand.putIfAbsent(cmd, statistics);
+			if (existing != null)
+				statistics = existing;
+		}
+		return statistics;
+	}
+
+	/**********
+	 * REPORT *
+	 **********/
+
+	private void printReport(int clients, long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.println(String.format("Load run: %d clients, %d loops, think time %d ms, ramp-up %d ms, %.2f s",
+				clients, loops, thinkTimeMillis, rampUpMillis, seconds));
+		StringBuilder header = new StringBuilder(String.format("%-8s %8s %10s", "Command", "Count", "ops/s"));
+		for (double percentile : PERCENTILES)
+			header.append(String.format(" %10s", "p" + formatPercentile(percentile) + " ms"));
+		header.append(String.format(" %10s %10s", "max ms", "unexpected"));
+		System.out.println(header);
+
+		long total = 0;
+		long totalUnexpected = 0;
+		for (Map.Entry<String, CommandStatistics> entry : new TreeMap<String, CommandStatistics>(statisticsByCommand).entrySet()) {
+			CommandStatistics statistics = entry.getValue();
+			LatencyHistogram histogram = statistics.histogram;
+			long count = histogram.getTotalCount();
+			StringBuilder row = new StringBuilder(String.format("%-8s %8d %10.1f", entry.getKey(), count, count / seconds));
+			for (double percentile : PERCENTILES)
+				row.append(String.format(" %10.3f", histogram.getValueAtPercentile(percentile) / 1e6));
+			row.append(String.format(" %10.3f %10d", histogram.getMaxValue() / 1e6, statistics.getUnexpected()));
+			System.out.println(row);
+			total += count;
+			totalUnexpected += statistics.getUnexpected();
+		}
+		System.out.println(String.format("%-8s %8d %10.1f (%d unexpected outcomes)", "Total", total, total / seconds, totalUnexpected));
+	}
+
+	private static String formatPercentile(double percentile) {
+		return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+	}
+
+	/**
+	 * Latencies of one command and the number of times it did not succeed or fail as
+	 * the script expects.
+	 */
+	private static class CommandStatistics {
+
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private long unexpected;
+
+		void record(long latency, boolean expected) {
+			histogram.record(latency);
+			if (!expected) {
+				synchronized (this) {
+					unexpected++;
+				}
+			}
+		}
+
+		synchronized long getUnexpected() {
+			return unexpected;
+		}
+	}
+}
@@ -8,12 +8,60 @@ import static javax.persistence.CascadeType.PERSIST;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.QueryHint;
 
+/**
+ * A car is available in a period if none of its reservations overlaps that period.
+ * Both periods are closed, so a reservation that ends on the first day of the period
+ * or starts on its last day overlaps it; one that ends the day before or starts the
+ * day after does not. The availability queries express this as a single NOT EXISTS
+ * anti-join on the reservation table, which is served by its (carId, startDate,
+ * endDate) index.
+ */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = Car.AVAILABLE_CAR_TYPES, query = ""
+            + "SELECT DISTINCT c.type "
+            + "FROM Car c "
+            + "WHERE NOT EXISTS ("
+            + "SELECT r.id FROM Reservation r "
+            + "WHERE r.carId = c.id AND r.startDate <= :endDate AND r.endDate >= :startDate)"),
+    // the car types of the free cars are read in one batch, not one select per car
+    @NamedQuery(name = Car.FREE_CARS, query = ""
+            + "SELECT c "
+            + "FROM CarRentalCompany crc "
+            + "INNER JOIN crc.cars c "
+            + "WHERE crc.name = :company AND c.type.name = :carType "
+            + "AND NOT EXISTS ("
+            + "SELECT r.id FROM Reservation r "
+            + "WHERE r.carId = c.id AND r.startDate <= :endDate AND r.endDate >= :startDate)",
+            hints = {
+                @QueryHint(name = "javax.persistence.fetchgraph", value = Car.CONFIRM_GRAPH),
+                @QueryHint(name = "eclipselink.batch", value = "c.type"),
+                @QueryHint(name = "eclipselink.batch.type", value = "IN")
+            }),
+    @NamedQuery(name = Car.OVERLAPPING_RESERVATIONS, query = ""
+            + "SELECT COUNT(r) "
+            + "FROM Reservation r "
+            + "WHERE r.carId = :carId AND r.startDate <= :endDate AND r.endDate >= :startDate")
+})
 public class Car implements Serializable {
 
+    public static final String AVAILABLE_CAR_TYPES = "Car.availableCarTypes";
+    public static final String FREE_CARS = "Car.freeCars";
+    public static final String OVERLAPPING_RESERVATIONS = "Car.overlappingReservations";
+
+    /**
+     * Entity graph, declared in orm.xml, that loads a car with its type but without its
+     * reservations.
+     */
+    public static final String CONFIRM_GRAPH = "Car.confirm";
+
     private int id;
     private CarType type;
     private Set<Reservation> reservations;
@@ -82,7 +130,10 @@ public class Car implements Serializable {
         reservations.remove(reservation);
     }
 
-    @OneToMany(cascade=PERSIST)
+    // read-only: a reservation is booked or cancelled by persisting or removing it with
+    // its carId, so booking a car does not load its reservation history
+    @OneToMany
+    @JoinColumn(name = "carId", insertable = false, updatable = false)
     public Set<Reservation> getReservations() {
         return reservations;
     }
@@ -9,21 +9,73 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static javax.persistence.CascadeType.PERSIST;
+import javax.persistence.Cacheable;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
-import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.QueryHint;
 import javax.persistence.Transient;
 
+/**
+ * Companies, with their regions, are kept in the shared cache. Their cars are not, since
+ * those change with every reservation.
+ */
 @Entity
+@Cacheable
+@NamedQueries({
+    @NamedQuery(name = CarRentalCompany.ALL_NAMES, query = ""
+            + "SELECT crc.name FROM CarRentalCompany crc",
+            hints = @QueryHint(name = "eclipselink.query-results-cache", value = "true")),
+    @NamedQuery(name = CarRentalCompany.CAR_TYPES, query = ""
+            + "SELECT DISTINCT t "
+            + "FROM CarRentalCompany crc "
+            + "INNER JOIN crc.cars c "
+            + "INNER JOIN c.type t "
+            + "WHERE crc.name = :companyName",
+            hints = @QueryHint(name = "eclipselink.query-results-cache", value = "true")),
+    @NamedQuery(name = CarRentalCompany.QUOTE_PRICES, query = ""
+            + "SELECT DISTINCT crc.name, t.rentalPricePerDay "
+            + "FROM CarRentalCompany crc "
+            + "INNER JOIN crc.cars c "
+            + "INNER JOIN c.type t "
+            + "INNER JOIN crc.regions region "
+            + "WHERE region = :region AND t.name = :carType "
+            + "AND NOT EXISTS ("
+            + "SELECT r.id FROM Reservation r "
+            + "WHERE r.carId = c.id AND r.startDate <= :endDate AND r.endDate >= :startDate)"),
+    @NamedQuery(name = CarRentalCompany.AVAILABLE_CAR_TYPES_BY_PRICE, query = ""
+            + "SELECT c.type "
+            + "FROM CarRentalCompany crc "
+            + "INNER JOIN crc.cars c "
+            + "INNER JOIN crc.regions region "
+            + "WHERE region = :region "
+            + "AND NOT EXISTS ("
+            + "SELECT r.id FROM Reservation r "
+            + "WHERE r.carId = c.id AND r.startDate <= :endDate AND r.endDate >= :startDate) "
+            + "ORDER BY c.type.rentalPricePerDay ASC")
+})
 public class CarRentalCompany implements Serializable {
 
+    // companies are only added by loading, so the names are served from the query results cache
+    public static final String ALL_NAMES = "CarRentalCompany.allNames";
+    public static final String CAR_TYPES = "CarRentalCompany.carTypes";
+    /**
+     * Name and price per day of every company that has a car of the given type free in
+     * the given period and region.
+     */
+    public static final String QUOTE_PRICES = "CarRentalCompany.quotePrices";
+    public static final String AVAILABLE_CAR_TYPES_BY_PRICE = "CarRentalCompany.availableCarTypesByPrice";
+
     private static Logger LOG = Logger.getLogger(CarRentalCompany.class.getName());
     
     private String name;
     private List<Car> cars;
-    private Set<CarType> carTypes = new HashSet<>();
+    private transient CarMap carsById;
+    // derived from the cars on first use, so loading a company does not load its fleet
+    private transient Set<CarType> carTypes;
     private List<String> regions;
 
 	
@@ -40,9 +92,6 @@ public class CarRentalCompany implements Serializable {
         this.name = name;
         this.cars = cars;
         this.regions = regions;
-        for (Car car : cars) {
-            carTypes.add(car.getType());
-        }
     }
 
     /********
@@ -77,6 +126,13 @@ public class CarRentalCompany implements Serializable {
     
     @Transient
     public Set<CarType> getCarTypes() {
+        if (carTypes == null) {
+            Set<CarType> types = new HashSet<>();
+            for (Car car : cars) {
+                types.add(car.getType());
+            }
+            carTypes = types;
+        }
         return carTypes;
     }
     
@@ -85,7 +141,7 @@ public class CarRentalCompany implements Serializable {
     }
 
     public CarType getType(String carTypeName) {
-        for(CarType type:carTypes){
+        for(CarType type:getCarTypes()){
             if(type.getName().equals(carTypeName))
                 return type;
         }
@@ -112,31 +168,44 @@ public class CarRentalCompany implements Serializable {
      *********/
     
     public void addNewCar(CarType carType, int nrOfCars) {
-        carTypes.add(carType);
+        if (carTypes != null) {
+            carTypes.add(carType);
+        }
         for(int i = 0; i < nrOfCars; i++) {
             cars.add(new Car(carType));
         }
+        // the new cars only get their uid when they are persisted
+        carsById = null;
     }
     
     public Car getCar(int uid) {
-        for (Car car : cars) {
-            if (car.getId() == uid) {
-                return car;
-            }
+        Car car = carsById == null ? null : carsById.get(uid);
+        if (car == null) {
+            indexCars();
+            car = carsById.get(uid);
+        }
+        if (car != null) {
+            return car;
         }
         throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
     }
 
-    @OneToMany(cascade=PERSIST, fetch = FetchType.EAGER)
+    private void indexCars() {
+        carsById = new CarMap(cars.size());
+        for (Car car : cars) {
+            carsById.put(car);
+        }
+    }
+
+    @OneToMany(cascade=PERSIST)
     public List<Car> getCars() {
         return cars;
     }
     
     public void setCars(List<Car> cars) {
         this.cars = cars;
-        for (Car car : cars) {
-            carTypes.add(car.getType());
-        }
+        this.carsById = null;
+        this.carTypes = null;
     }
     
     public Set<Car> getCars(CarType type) {
@@ -196,23 +265,29 @@ public class CarRentalCompany implements Serializable {
     }
 
     // Implementation can be subject to different pricing strategies
-    private double calculateRentalPrice(double rentalPricePerDay, Date start, Date end) {
+    public static double calculateRentalPrice(double rentalPricePerDay, Date start, Date end) {
         return rentalPricePerDay * Math.ceil((end.getTime() - start.getTime())
                 / (1000 * 60 * 60 * 24D));
     }
 
     public Reservation confirmQuote(Quote quote) throws ReservationException {
         LOG.log(Level.INFO, "<{0}> Reservation of {1}", new Object[]{name, quote.toString()});
-        List<Car> availableCars = getAvailableCars(quote.getCarType(), quote.getStartDate(), quote.getEndDate());
+        return confirmQuote(quote, getAvailableCars(quote.getCarType(), quote.getStartDate(), quote.getEndDate()));
+    }
+
+    /**
+     * Books the quote on a random car out of the given cars, which must all be of the
+     * type of the quote and free in its period. Persisting the returned reservation
+     * books the car; the reservations of the car are not loaded.
+     */
+    public static Reservation confirmQuote(Quote quote, List<Car> availableCars) throws ReservationException {
         if (availableCars.isEmpty()) {
             throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
                     + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
         }
         Car car = availableCars.get((int) (Math.random() * availableCars.size()));
 
-        Reservation res = new Reservation(quote, car.getId());
-        car.addReservation(res);
-        return res;
+        return new Reservation(quote, car.getId());
     }
 
     public void cancelReservation(Reservation res) {
@@ -57,12 +57,7 @@ public class ManagerSession implements ManagerSessionRemote {
     @RolesAllowed("carManager")
     public Set<CarType> getCarTypes(String company) throws Exception{
         LOG.log(Level.INFO, "Retrieving car types for company {0}", company);
-        List<CarType> results = em.createQuery(""
-                + "SELECT t.name "
-                + "FROM CarRentalCompany crc "
-                + "INNER JOIN crc.cars c "
-                + "INNER JOIN c.type t "
-                + "WHERE crc.name = :companyName")
+        List<CarType> results = em.createNamedQuery(CarRentalCompany.CAR_TYPES, CarType.class)
                 .setParameter("companyName", company)
                 .getResultList();
         return new HashSet<>(results);
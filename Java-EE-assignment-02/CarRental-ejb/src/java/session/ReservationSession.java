@@ -1,18 +1,29 @@
 package session;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
 import javax.ejb.SessionContext;
 import javax.ejb.Stateful;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
+import javax.persistence.TemporalType;
+import rental.Car;
 import rental.CarRentalCompany;
 import rental.CarType;
 import rental.Quote;
@@ -24,6 +35,13 @@ import rental.ReservationException;
 public class ReservationSession implements ReservationSessionRemote {
     
     private static final Logger LOG = Logger.getLogger(ReservationSession.class.getName());
+    private static final Random RANDOM = new Random();
+    private static final Comparator<Car> BY_ID = new Comparator<Car>() {
+        @Override
+        public int compare(Car c1, Car c2) {
+            return Integer.compare(c1.getId(), c2.getId());
+        }
+    };
     
     @Resource
     SessionContext ctx; 
@@ -37,7 +55,7 @@ public class ReservationSession implements ReservationSessionRemote {
     @Override
     public Set<String> getAllRentalCompanies() {
         LOG.log(Level.INFO, "Retrieving all car rental companies");
-        List<String> companies = em.createQuery("SELECT c.name FROM CarRentalCompany c")
+        List<String> companies = em.createNamedQuery(CarRentalCompany.ALL_NAMES, String.class)
                 .getResultList();
         return new HashSet<>(companies);
     }
@@ -45,16 +63,9 @@ public class ReservationSession implements ReservationSessionRemote {
     @Override
     public List<CarType> getAvailableCarTypes(Date start, Date end) throws Exception {
         LOG.log(Level.INFO, "Retrieving available car types between {0} and {1}", new Object[]{start, end});
-        List<CarType> availableCarTypes = em.createQuery(""
-                + "SELECT DISTINCT c.type " 
-                + "FROM Car c " 
-                + "WHERE " 
-                + ":startDate > ALL (SELECT r.endDate FROM Reservation r WHERE r.carId = c.id AND r.endDate <= :endDate) " 
-                + "AND " 
-                + ":endDate < ALL (SELECT r.startDate FROM Reservation r WHERE r.carId = c.id AND r.endDate > :endDate) ", 
-                CarType.class)
-                .setParameter("startDate", start)
-                .setParameter("endDate", end)
+        List<CarType> availableCarTypes = em.createNamedQuery(Car.AVAILABLE_CAR_TYPES, CarType.class)
+                .setParameter("startDate", start, TemporalType.DATE)
+                .setParameter("endDate", end, TemporalType.DATE)
                 .getResultList();
         return availableCarTypes;
     }
@@ -65,19 +76,29 @@ public class ReservationSession implements ReservationSessionRemote {
             throw new ReservationException("Unable to create quote - companies are loading"); 
         }
         
-        List<CarRentalCompany> companies = em.createQuery("SELECT crc FROM CarRentalCompany crc", CarRentalCompany.class).getResultList();
-        for(CarRentalCompany company: companies) {
-            try {
-                Quote createdQuote = company.createQuote(constraints, name);
-                quotes.add(createdQuote);
-                return createdQuote;
-            } catch(Exception ignored) {
-                LOG.info("Could not create quote: " + ignored.getMessage());
-                if(ignored.getMessage() == null) {
-                    ignored.printStackTrace();
-                }
-            }
+        if (!constraints.getStartDate().before(constraints.getEndDate())) {
+            throw new ReservationException("Unable to create quote - illegal given period");
+        }
+
+        // only the name and price of a company that can serve the constraints are loaded,
+        // instead of every company with its fleet and reservations
+        List<Object[]> prices = em.createNamedQuery(CarRentalCompany.QUOTE_PRICES, Object[].class)
+                .setParameter("region", constraints.getRegion())
+                .setParameter("carType", constraints.getCarType())
+                .setParameter("startDate", constraints.getStartDate(), TemporalType.DATE)
+                .setParameter("endDate", constraints.getEndDate(), TemporalType.DATE)
+                .setMaxResults(1)
+                .getResultList();
+        if (!prices.isEmpty()) {
+            String company = (String) prices.get(0)[0];
+            double rentalPricePerDay = (Double) prices.get(0)[1];
+            double price = CarRentalCompany.calculateRentalPrice(rentalPricePerDay, constraints.getStartDate(), constraints.getEndDate());
+            Quote createdQuote = new Quote(name, constraints.getStartDate(), constraints.getEndDate(), company, constraints.getCarType(), price);
+            quotes.add(createdQuote);
+            LOG.log(Level.INFO, "Created quote for {0} with constraints {1}", new Object[]{name, constraints});
+            return createdQuote;
         }
+        LOG.log(Level.INFO, "Could not create quote for {0} with constraints {1}", new Object[]{name, constraints});
         throw new ReservationException("Unable to create quote"); 
     }
 
@@ -93,14 +114,9 @@ public class ReservationSession implements ReservationSessionRemote {
             throw new ReservationException("Unable to create quote - companies are loading"); 
         }
         LOG.log(Level.INFO, "Confirming quotes");
-        List<Reservation> done = new LinkedList<>();
+        List<Reservation> done;
         try {
-            for (Quote quote : quotes) {
-                CarRentalCompany crc = em.find(CarRentalCompany.class, quote.getRentalCompany());
-                Reservation res = crc.confirmQuote(quote);
-                done.add(res);
-                em.persist(res);
-            }
+            done = confirmOnFreeCars();
         } catch (Exception e) {
             LOG.log(Level.WARNING, "ROLLBACK: Exception occurred on creating quote: {0}", e.getMessage());
             ctx.setRollbackOnly();
@@ -110,6 +126,116 @@ public class ReservationSession implements ReservationSessionRemote {
         return done;
     }
 
+    /**
+     * Books every quote on one of its free cars. A concurrent session may book a car
+     * between the query for free cars and this booking, so a car is locked and checked
+     * again before it is booked.
+     *
+     * Every quote starts at a random car among its free cars, so concurrent sessions
+     * for the same car type mostly lock different cars. The chosen cars are locked in
+     * ascending id order, and a quote whose car was booked concurrently is retried on
+     * its next free car with a higher id than any car locked so far. A session thus
+     * always locks cars in ascending id order and two sessions cannot deadlock.
+     *
+     * Unless a car is booked concurrently, a quote costs four SQL statements: the query
+     * for free cars, the SELECT ... FOR UPDATE that locks the chosen car, the overlap
+     * count and the INSERT of the reservation. On top of that come one batched read of
+     * the car types that are not in the shared cache yet and, once per 50 reservations,
+     * the allocation of ids. Neither the fleet nor the reservations of a car are read.
+     * To check, set eclipselink.logging.level.sql to FINE and confirm a session.
+     */
+    private List<Reservation> confirmOnFreeCars() throws ReservationException {
+        List<Quote> quotes = new ArrayList<>(this.quotes);
+        Reservation[] reservations = new Reservation[quotes.size()];
+        // the free cars of every quote, in the order in which they are tried
+        List<List<Car>> candidates = new ArrayList<>();
+        int loaded = 0;
+        // all free cars are queried before any car is locked
+        for (Quote quote : quotes) {
+            // only the free cars of the quoted type are loaded, not the company's fleet
+            List<Car> freeCars = em.createNamedQuery(Car.FREE_CARS, Car.class)
+                    .setParameter("company", quote.getRentalCompany())
+                    .setParameter("carType", quote.getCarType())
+                    .setParameter("startDate", quote.getStartDate(), TemporalType.DATE)
+                    .setParameter("endDate", quote.getEndDate(), TemporalType.DATE)
+                    .getResultList();
+            if (freeCars.isEmpty()) {
+                throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
+                        + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
+            }
+            List<Car> sorted = new ArrayList<>(freeCars);
+            Collections.sort(sorted, BY_ID);
+            Collections.rotate(sorted, -RANDOM.nextInt(sorted.size()));
+            candidates.add(sorted);
+            loaded += sorted.size();
+        }
+        // only free cars of the quoted types may be loaded, never a company's whole fleet
+        LOG.log(Level.FINE, "Loaded {0} candidate cars for {1} quotes", new Object[]{loaded, quotes.size()});
+
+        int lastLocked = Integer.MIN_VALUE;
+        while (true) {
+            // the next car of every quote that is not booked yet
+            SortedMap<Integer, List<Integer>> quotesByCarId = new TreeMap<>();
+            Map<Integer, Car> carsById = new HashMap<>();
+            for (int i = 0; i < quotes.size(); i++) {
+                if (reservations[i] != null) {
+                    continue;
+                }
+                Car car = nextCandidate(candidates.get(i), lastLocked);
+                if (car == null) {
+                    Quote quote = quotes.get(i);
+                    throw new ReservationException("Reservation failed, the free cars of type " + quote.getCarType()
+                            + " from " + quote.getStartDate() + " to " + quote.getEndDate() + " were booked concurrently");
+                }
+                carsById.put(car.getId(), car);
+                if (!quotesByCarId.containsKey(car.getId())) {
+                    quotesByCarId.put(car.getId(), new ArrayList<Integer>());
+                }
+                quotesByCarId.get(car.getId()).add(i);
+            }
+            if (quotesByCarId.isEmpty()) {
+                break;
+            }
+            for (Map.Entry<Integer, List<Integer>> candidate : quotesByCarId.entrySet()) {
+                Car car = carsById.get(candidate.getKey());
+                // held until the transaction ends, so no other session can book the car meanwhile
+                em.lock(car, LockModeType.PESSIMISTIC_WRITE);
+                lastLocked = car.getId();
+                for (int i : candidate.getValue()) {
+                    Quote quote = quotes.get(i);
+                    // also sees the reservations this session persisted earlier
+                    long overlapping = em.createNamedQuery(Car.OVERLAPPING_RESERVATIONS, Long.class)
+                            .setParameter("carId", car.getId())
+                            .setParameter("startDate", quote.getStartDate(), TemporalType.DATE)
+                            .setParameter("endDate", quote.getEndDate(), TemporalType.DATE)
+                            .getSingleResult();
+                    if (overlapping == 0) {
+                        reservations[i] = CarRentalCompany.confirmQuote(quote, Collections.singletonList(car));
+                        em.persist(reservations[i]);
+                    } else {
+                        LOG.log(Level.INFO, "Car {0} was booked concurrently, retrying on another car", car.getId());
+                    }
+                }
+            }
+        }
+        return new LinkedList<>(Arrays.asList(reservations));
+    }
+
+    /**
+     * Removes and returns the first of the given cars with an id above the given one.
+     *
+     * @return the car, or null if no such car is left
+     */
+    private static Car nextCandidate(List<Car> candidates, int lastLocked) {
+        while (!candidates.isEmpty()) {
+            Car car = candidates.remove(0);
+            if (car.getId() > lastLocked) {
+                return car;
+            }
+        }
+        return null;
+    }
+
     @Override
     public void setRenterName(String name) throws Exception {
         LOG.log(Level.INFO, "Setting renter name to {0}", name);
@@ -129,21 +255,11 @@ public class ReservationSession implements ReservationSessionRemote {
     @Override
     public String getCheapestCarType(Date start, Date end, String region) throws Exception {
         LOG.log(Level.INFO, "Retreving cheapest car type {0} {1} {2}", new Object[]{start, end, region});
-        List<CarType> carTypesByPrice = em.createQuery(""
-            + "SELECT c.type " 
-            + "FROM CarRentalCompany crc " 
-            + "INNER JOIN crc.cars c "    
-            + "INNER JOIN crc.regions r "
-            + "WHERE " 
-            + "r = :region AND "
-            + ":startDate > ALL (SELECT r.endDate FROM Reservation r WHERE r.carId = c.id AND r.endDate <= :endDate) " //?
-            + "AND " 
-            + ":endDate < ALL (SELECT r.startDate FROM Reservation r WHERE r.carId = c.id AND r.endDate > :endDate) " //?
-            + "ORDER BY c.type.rentalPricePerDay ASC",
-            CarType.class)
-            .setParameter("startDate", start)
-            .setParameter("endDate", end)
+        List<CarType> carTypesByPrice = em.createNamedQuery(CarRentalCompany.AVAILABLE_CAR_TYPES_BY_PRICE, CarType.class)
+            .setParameter("startDate", start, TemporalType.DATE)
+            .setParameter("endDate", end, TemporalType.DATE)
             .setParameter("region", region)
+            .setMaxResults(1)
             .getResultList();
         return carTypesByPrice.get(0).getName();
     }
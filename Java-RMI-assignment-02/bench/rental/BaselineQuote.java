@@ -0,0 +1,36 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Copy of Quote as it was before the compact serialized form, with the default
+ * serialization, to compare the serialized size and cost against.
+ */
+class BaselineQuote implements Serializable {
+
+	private Date startDate;
+	private Date endDate;
+	private String carRenter;
+	private String rentalCompany;
+	private String carType;
+	private double rentalPrice;
+
+	BaselineQuote(String carRenter, Date start, Date end, String rentalCompany, String carType, double rentalPrice) {
+		this.carRenter = carRenter;
+		this.startDate = start;
+		this.endDate = end;
+		this.rentalCompany = rentalCompany;
+		this.carType = carType;
+		this.rentalPrice = rentalPrice;
+	}
+
+	/**
+	 * Copies a quote the way the old company created it: the renter and car type are
+	 * the strings of the request, and only the company name is shared.
+	 */
+	static BaselineQuote of(Quote quote) {
+		return new BaselineQuote(new String(quote.getCarRenter()), quote.getStartDate(), quote.getEndDate(),
+				quote.getRentalCompany(), new String(quote.getCarType()), quote.getRentalPrice());
+	}
+}
@@ -0,0 +1,26 @@
+package rental;
+
+import java.util.Date;
+
+/**
+ * Copy of Reservation as it was before the compact serialized form, see BaselineQuote.
+ */
+class BaselineReservation extends BaselineQuote {
+
+	private int carId;
+
+	BaselineReservation(String carRenter, Date start, Date end, String rentalCompany, String carType,
+			double rentalPrice, int carId) {
+		super(carRenter, start, end, rentalCompany, carType, rentalPrice);
+		this.carId = carId;
+	}
+
+	/**
+	 * Copies a reservation the way BaselineQuote.of copies a quote.
+	 */
+	static BaselineReservation of(Reservation reservation) {
+		return new BaselineReservation(new String(reservation.getCarRenter()), reservation.getStartDate(),
+				reservation.getEndDate(), reservation.getRentalCompany(), new String(reservation.getCarType()),
+				reservation.getRentalPrice(), reservation.getCarId());
+	}
+}
@@ -0,0 +1,159 @@
+package rental;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal throughput harness: every benchmark runs for a number of warmup and
+ * measurement iterations of a fixed duration, after which the mean throughput and
+ * its standard deviation over the measurement iterations are printed.
+ *
+ * The result of every operation is consumed, so the JIT cannot drop the work.
+ * Operations that are run concurrently must be thread-safe.
+ */
+final class BenchmarkRunner {
+
+	/**
+	 * A single benchmarked operation.
+	 */
+	interface Operation {
+		Object run(SplittableRandom random) throws Exception;
+	}
+
+	// operations are timed in batches, so reading the clock does not dominate
+	private static final int BATCH_SIZE = 16;
+
+	private final int warmupIterations;
+	private final int iterations;
+	private final long iterationNanos;
+	private final Pattern filter;
+	private long sink;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	/**
+	 * @param filter	only benchmarks whose name matches this regular expression are run
+	 */
+	BenchmarkRunner(int warmupIterations, int iterations, long iterationMillis, String filter) {
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+		this.filter = Pattern.compile(filter);
+	}
+
+	static void printHeader() {
+		System.out.println(String.format("%-46s %10s %18s %12s", "Benchmark", "Cars", "ops/s", "ns/op"));
+	}
+
+	/*******
+	 * RUN *
+	 *******/
+
+	void run(String name, int cars, Operation operation) throws Exception {
+		if (!filter.matcher(name).find())
+			return;
+
+		SplittableRandom random = new SplittableRandom(42);
+		double[] throughput = new double[iterations];
+		for (int iteration = 0; iteration < warmupIterations + iterations; iteration++) {
+			long start = System.nanoTime();
+			long operations = runBatches(operation, random, start);
+			long elapsed = System.nanoTime() - start;
+			if (iteration >= warmupIterations)
+				throughput[iteration - warmupIterations] = operations * 1e9 / elapsed;
+		}
+		report(name, cars, throughput);
+	}
+
+	/**
+	 * Runs the operation on the given number of threads at the same time and reports
+	 * the total throughput of all threads.
+	 */
+	void runConcurrently(String name, int cars, int threads, Operation operation) throws Exception {
+		if (!filter.matcher(name).find())
+			return;
+
+		SplittableRandom seed = new SplittableRandom(42);
+		SplittableRandom[] randoms = new SplittableRandom[threads];
+		for (int t = 0; t < threads; t++)
+			randoms[t] = seed.split();
+		double[] throughput = new double[iterations];
+		for (int iteration = 0; iteration < warmupIterations + iterations; iteration++) {
+			long[] operations = new long[threads];
+			Exception[] errors = new Exception[threads];
+			CountDownLatch ready = new CountDownLatch(threads);
+			CountDownLatch go = new CountDownLatch(1);
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				workers[t] = new Thread(() -> {
+					try {
+						ready.countDown();
+						go.await();
+						operations[thread] = runBatches(operation, randoms[thread], System.nanoTime());
+					} catch (Exception e) {
+						errors[thread] = e;
+					}
+				}, name + "-" + t);
+				workers[t].start();
+			}
+			ready.await();
+			long start = System.nanoTime();
+			go.countDown();
+			long total = 0;
+			for (int t = 0; t < threads; t++) {
+				workers[t].join();
+				if (errors[t] != null)
+					throw errors[t];
+				total += operations[t];
+			}
+			long elapsed = System.nanoTime() - start;
+			if (iteration >= warmupIterations)
+				throughput[iteration - warmupIterations] = total * 1e9 / elapsed;
+		}
+		report(name, cars, throughput);
+	}
+
+	/**
+	 * @return the number of operations run in one iteration that started at the given time
+	 */
+	private long runBatches(Operation operation, SplittableRandom random, long start) throws Exception {
+		long operations = 0;
+		long consumed = 0;
+		do {
+			for (int i = 0; i < BATCH_SIZE; i++)
+				consumed += operation.run(random) == null ? 1 : 2;
+			operations += BATCH_SIZE;
+		} while (System.nanoTime() - start < iterationNanos);
+		consume(consumed);
+		return operations;
+	}
+
+	private void report(String name, int cars, double[] throughput) {
+		double mean = 0;
+		for (double value : throughput)
+			mean += value;
+		mean /= iterations;
+		double variance = 0;
+		for (double value : throughput)
+			variance += (value - mean) * (value - mean);
+		double deviation = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+		System.out.println(String.format("%-46s %10d %10.0f +- %3.0f%% %12.0f",
+				name, cars, mean, mean == 0 ? 0 : 100 * deviation / mean, 1e9 / mean));
+	}
+
+	private synchronized void consume(long consumed) {
+		sink += consumed;
+	}
+
+	/**
+	 * @return a value derived from every consumed result
+	 */
+	synchronized long getSink() {
+		return sink;
+	}
+}
@@ -0,0 +1,193 @@
+package rental;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stress test of concurrent bookings of a single car type.
+ *
+ * A number of threads book random, overlapping periods on a small fleet and cancel
+ * about half of their bookings again right away, as a rolled back session does. The
+ * periods lie in a short window that all threads move through together, so most
+ * bookings compete with bookings of other threads for the same cars and days, while
+ * the fleet never fills up. Afterwards:
+ * <ul>
+ * <li>no worker may have thrown,</li>
+ * <li>the bookings that were confirmed and not cancelled may not overlap per car,</li>
+ * <li>every car must hold exactly those bookings,</li>
+ * <li>for every car and day, the occupancy bitmap of the car type must agree with
+ * the reservations of the car.</li>
+ * </ul>
+ *
+ * Like the benchmarks it is not part of the server build. Run it from the project folder:
+ * <pre>
+ * javac -d bin-bench src/rental/*.java bench/rental/*.java
+ * java -cp bin-bench rental.OccupancyStressTest
+ * </pre>
+ * and tune it with system properties:
+ * <ul>
+ * <li>stress.threads: number of booking threads (default 32)</li>
+ * <li>stress.cars: number of cars of the type (default 16)</li>
+ * <li>stress.operations: bookings per thread and round (default 2000)</li>
+ * <li>stress.rounds: number of rounds, each on a new company (default 20)</li>
+ * </ul>
+ * The exit status is 1 if any round failed.
+ */
+public class OccupancyStressTest {
+
+	private static final String CAR_TYPE = "Compact";
+	// the periods of the i-th operation of every thread start in [i, i + WINDOW_DAYS)
+	private static final int WINDOW_DAYS = 30;
+	private static final int MAX_RENTAL_DAYS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int threads = Integer.getInteger("stress.threads", 32);
+		int cars = Integer.getInteger("stress.cars", 16);
+		int operations = Integer.getInteger("stress.operations", 2000);
+		int rounds = Integer.getInteger("stress.rounds", 20);
+		Logger.getLogger(CarRentalCompany.class.getName()).setLevel(Level.WARNING);
+
+		int failedRounds = 0;
+		for (int round = 0; round < rounds; round++) {
+			List<Car> fleet = new ArrayList<>();
+			CarType type = new CarType(CAR_TYPE, 4, 300, 50, false);
+			for (int uid = 0; uid < cars; uid++)
+				fleet.add(new Car(uid, type));
+			CarRentalCompany company = new CarRentalCompany("Stress", Arrays.asList("Region"), fleet);
+
+			Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+			Queue<Reservation> kept = new ConcurrentLinkedQueue<>();
+			long bookings = book(company, threads, operations, round, kept, failures);
+			for (Throwable failure : failures) {
+				System.out.println("Worker failed: " + failure);
+				failure.printStackTrace(System.out);
+			}
+			int horizon = operations + WINDOW_DAYS + MAX_RENTAL_DAYS;
+			int errors = failures.size() + countDoubleBookings(kept) + countLostBookings(fleet, kept)
+					+ countBitmapMismatches(company, fleet, horizon);
+			System.out.println(String.format("Round %d: %d of %d bookings confirmed, %d kept, %d errors",
+					round, bookings, (long) threads * operations, kept.size(), errors));
+			if (errors > 0)
+				failedRounds++;
+		}
+		System.out.println(String.format("%d of %d rounds failed", failedRounds, rounds));
+		if (failedRounds > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Adds the bookings that were confirmed and not cancelled to kept, and everything a
+	 * worker threw to failures.
+	 *
+	 * @return the number of successful bookings
+	 */
+	private static long book(CarRentalCompany company, int threads, int operations, int round,
+			Queue<Reservation> kept, Queue<Throwable> failures) throws Exception {
+		AtomicLong bookings = new AtomicLong();
+		CountDownLatch go = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		SplittableRandom seed = new SplittableRandom(round);
+		for (int t = 0; t < threads; t++) {
+			SplittableRandom random = seed.split();
+			String renter = "renter" + t;
+			workers[t] = new Thread(() -> {
+				try {
+					go.await();
+					for (int i = 0; i < operations; i++) {
+						int startDay = i + random.nextInt(WINDOW_DAYS);
+						int endDay = startDay + 1 + random.nextInt(MAX_RENTAL_DAYS);
+						Quote quote = new Quote(renter, startDay, endDay, company.getName(), CAR_TYPE, 50);
+						try {
+							Reservation reservation = company.confirmQuote(quote);
+							bookings.incrementAndGet();
+							if (random.nextBoolean())
+								company.cancelReservation(reservation);
+							else
+								kept.add(reservation);
+						} catch (ReservationException e) {
+							// every car is booked in this period
+						}
+					}
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+			workers[t].start();
+		}
+		go.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		return bookings.get();
+	}
+
+	/**
+	 * Checks the kept bookings against each other, independently of how the cars store
+	 * their reservations.
+	 */
+	private static int countDoubleBookings(Collection<Reservation> kept) {
+		Map<Integer, List<Reservation>> byCar = new HashMap<>();
+		for (Reservation reservation : kept)
+			byCar.computeIfAbsent(reservation.getCarId(), id -> new ArrayList<>()).add(reservation);
+		int errors = 0;
+		for (List<Reservation> reservations : byCar.values()) {
+			reservations.sort(Comparator.comparingInt(Reservation::getStartDay));
+			for (int i = 1; i < reservations.size(); i++) {
+				if (reservations.get(i).getStartDay() <= reservations.get(i - 1).getEndDay()) {
+					System.out.println("Double booking: " + reservations.get(i - 1) + " and " + reservations.get(i));
+					errors++;
+				}
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Checks that every car holds exactly the kept bookings that were made on it.
+	 */
+	private static int countLostBookings(List<Car> fleet, Collection<Reservation> kept) {
+		Map<Integer, Set<Reservation>> byCar = new HashMap<>();
+		for (Reservation reservation : kept)
+			byCar.computeIfAbsent(reservation.getCarId(), id -> new HashSet<>()).add(reservation);
+		int errors = 0;
+		for (Car car : fleet) {
+			Set<Reservation> expected = byCar.getOrDefault(car.getId(), new HashSet<>());
+			Set<Reservation> actual = new HashSet<>(car.getReservations());
+			if (!actual.equals(expected)) {
+				System.out.println(String.format("Car %d holds %d reservations, %d were kept", car.getId(),
+						actual.size(), expected.size()));
+				errors++;
+			}
+		}
+		return errors;
+	}
+
+	private static int countBitmapMismatches(CarRentalCompany company, List<Car> fleet, int horizon) {
+		CarTypeOccupancy occupancy = company.getOccupancy(CAR_TYPE);
+		int errors = 0;
+		for (Car car : fleet) {
+			for (int day = 0; day < horizon; day++) {
+				boolean booked = !car.isAvailable(day, day);
+				if (occupancy.isOccupied(car.getId(), day) != booked) {
+					System.out.println(String.format("Bitmap of car %d on day %d says %s, reservations say %s",
+							car.getId(), day, booked ? "free" : "booked", booked ? "booked" : "free"));
+					errors++;
+				}
+			}
+		}
+		return errors;
+	}
+}
@@ -0,0 +1,382 @@
+package rental;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Throughput benchmarks of the car rental companies and the agency, on fleets that are
+ * generated from the car types in hertz.csv and dockx.csv.
+ *
+ * The benchmarks are not part of the server build. Run them from the project folder:
+ * <pre>
+ * javac -d bin-bench src/rental/*.java bench/rental/*.java
+ * java -cp bin-bench rental.RentalBenchmarks
+ * </pre>
+ * and tune them with system properties:
+ * <ul>
+ * <li>bench.cars: comma separated fleet sizes per company (default 1000,100000)</li>
+ * <li>bench.density: historic reservations per car (default 10)</li>
+ * <li>bench.carReservations: comma separated numbers of reservations of the single car
+ * 		in the availability check benchmarks (default 10,1000,100000)</li>
+ * <li>bench.renters: number of distinct renters (default 10000)</li>
+ * <li>bench.threads: comma separated thread counts of the scaling benchmarks
+ * 		(default 1,2,4,8,16,32)</li>
+ * <li>bench.warmup, bench.iterations, bench.millis: warmup and measurement iterations
+ * 		and the duration of one iteration (default 3, 5 and 1000)</li>
+ * <li>bench.filter: regular expression on the benchmark names (default all)</li>
+ * <li>bench.csvFolder: folder with the company data files (default .)</li>
+ * </ul>
+ */
+public class RentalBenchmarks {
+
+	private static final int SERIALIZED_RESERVATIONS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int[] fleetSizes = Arrays.stream(System.getProperty("bench.cars", "1000,100000").split(","))
+				.mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+		int density = Integer.getInteger("bench.density", 10);
+		int renters = Integer.getInteger("bench.renters", 10000);
+		int[] threadCounts = Arrays.stream(System.getProperty("bench.threads", "1,2,4,8,16,32").split(","))
+				.mapToInt(threads -> Integer.parseInt(threads.trim())).toArray();
+		String csvFolder = System.getProperty("bench.csvFolder", ".");
+		BenchmarkRunner runner = new BenchmarkRunner(
+				Integer.getInteger("bench.warmup", 3),
+				Integer.getInteger("bench.iterations", 5),
+				Long.getLong("bench.millis", 1000),
+				System.getProperty("bench.filter", ""));
+
+		// per-request logging is measured separately, see createQuote/logged
+		Logger companyLogger = Logger.getLogger(CarRentalCompany.class.getName());
+		companyLogger.setLevel(Level.WARNING);
+
+		SyntheticFleet hertz = new SyntheticFleet(new File(csvFolder, "hertz.csv").getPath());
+		SyntheticFleet dockx = new SyntheticFleet(new File(csvFolder, "dockx.csv").getPath());
+
+		List<Reservation> reservations = generateReservations(hertz, SERIALIZED_RESERVATIONS, renters);
+		printSerializedSizes(reservations);
+		System.out.println(String.format("Reservation density: %d per car, %d renters", density, renters));
+		BenchmarkRunner.printHeader();
+		for (String carReservations : System.getProperty("bench.carReservations", "10,1000,100000").split(","))
+			runCarBenchmarks(runner, hertz, Integer.parseInt(carReservations.trim()), renters);
+		runSerializationBenchmarks(runner, reservations);
+		for (int cars : fleetSizes) {
+			SplittableRandom random = new SplittableRandom(cars);
+			CarRentalCompany hertzCompany = hertz.generate(cars, density, renters, random);
+			CarRentalCompany dockxCompany = dockx.generate(cars, density, renters, random);
+			RentalAgency agency = new RentalAgency(Arrays.<ICarRentalCompany>asList(hertzCompany, dockxCompany));
+			System.gc();
+
+			runCompanyBenchmarks(runner, cars, hertz, hertzCompany, renters);
+			runAgencyBenchmarks(runner, cars, hertz, agency, renters);
+			runScalingBenchmarks(runner, cars, hertz, hertzCompany, agency, threadCounts);
+		}
+		System.out.println("(" + runner.getSink() + ")");
+	}
+
+	/*******
+	 * CAR *
+	 *******/
+
+	/**
+	 * Compares the availability check on the reservation index of a car with a linear
+	 * scan over the same reservations, as Car.isAvailable did before the index.
+	 */
+	private static void runCarBenchmarks(BenchmarkRunner runner, SyntheticFleet fleet, int reservations,
+			int renters) throws Exception {
+		Car car = fleet.generateCar(0, fleet.getCarTypes().get(0), reservations, renters, new SplittableRandom(reservations));
+		List<Reservation> scanned = new ArrayList<>(car.getReservations());
+		int horizon = Math.max(SyntheticFleet.HORIZON_DAYS, reservations);
+
+		runner.run("car.isAvailable/index[" + reservations + "]", 1, random -> {
+			int startDay = SyntheticFleet.FIRST_DAY + random.nextInt(horizon);
+			return car.isAvailable(startDay, startDay + random.nextInt(7));
+		});
+
+		runner.run("car.isAvailable/linearScan[" + reservations + "]", 1, random -> {
+			int startDay = SyntheticFleet.FIRST_DAY + random.nextInt(horizon);
+			return isAvailableByScan(scanned, startDay, startDay + random.nextInt(7));
+		});
+	}
+
+	private static boolean isAvailableByScan(List<Reservation> reservations, int startDay, int endDay) {
+		for (Reservation reservation : reservations) {
+			if (reservation.getEndDay() < startDay || reservation.getStartDay() > endDay)
+				continue;
+			return false;
+		}
+		return true;
+	}
+
+	/*****************
+	 * SERIALIZATION *
+	 *****************/
+
+	private static List<Reservation> generateReservations(SyntheticFleet fleet, int count, int renters) {
+		return new ArrayList<>(fleet.generateCar(0, fleet.getCarTypes().get(0), count, renters,
+				new SplittableRandom(count)).getReservations());
+	}
+
+	/**
+	 * Reports the serialized size of the quotes and reservations that are sent to the
+	 * clients, alone and in a list as returned by the manager queries, next to the size
+	 * of the same objects in the default serialized form they had before.
+	 */
+	private static void printSerializedSizes(List<Reservation> reservations) throws IOException {
+		List<Quote> quotes = new ArrayList<>(reservations.size());
+		for (Reservation reservation : reservations)
+			quotes.add(new Quote(reservation.getCarRenter(), reservation.getStartDay(), reservation.getEndDay(),
+					reservation.getRentalCompany(), reservation.getCarType(), reservation.getRentalPrice()));
+		List<BaselineQuote> baselineQuotes = new ArrayList<>(quotes.size());
+		for (Quote quote : quotes)
+			baselineQuotes.add(BaselineQuote.of(quote));
+		List<BaselineReservation> baselineReservations = baselineReservations(reservations);
+
+		printSerializedSize("quote", quotes, baselineQuotes);
+		printSerializedSize("reservation", reservations, baselineReservations);
+	}
+
+	private static void printSerializedSize(String name, List<?> compact, List<?> baseline) throws IOException {
+		System.out.println(String.format("Serialized size: %s %d bytes alone (baseline %d), "
+				+ "%.1f bytes in a list of %d (baseline %.1f)", name,
+				serialize(compact.get(0)).length, serialize(baseline.get(0)).length,
+				(double) serialize(compact).length / compact.size(), compact.size(),
+				(double) serialize(baseline).length / baseline.size()));
+	}
+
+	private static List<BaselineReservation> baselineReservations(List<Reservation> reservations) {
+		List<BaselineReservation> baseline = new ArrayList<>(reservations.size());
+		for (Reservation reservation : reservations)
+			baseline.add(BaselineReservation.of(reservation));
+		return baseline;
+	}
+
+	/**
+	 * Serializes the reservations in the compact form and, as baseline, in the default
+	 * form of the old Reservation.
+	 */
+	private static void runSerializationBenchmarks(BenchmarkRunner runner, List<Reservation> reservations)
+			throws Exception {
+		String size = "[" + reservations.size() + "]";
+		byte[] serialized = serialize(reservations);
+		runner.run("serialize/reservations" + size, 1, random -> serialize(reservations));
+		runner.run("deserialize/reservations" + size, 1, random -> deserialize(serialized));
+
+		List<BaselineReservation> baseline = baselineReservations(reservations);
+		byte[] serializedBaseline = serialize(baseline);
+		runner.run("serialize/reservations" + size + "/baseline", 1, random -> serialize(baseline));
+		runner.run("deserialize/reservations" + size + "/baseline", 1, random -> deserialize(serializedBaseline));
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		}
+	}
+
+	/***********
+	 * COMPANY *
+	 ***********/
+
+	private static void runCompanyBenchmarks(BenchmarkRunner runner, int cars, SyntheticFleet fleet,
+			CarRentalCompany company, int renters) throws Exception {
+		List<CarType> carTypes = fleet.getCarTypes();
+		String region = fleet.getRegions().get(0);
+
+		runner.run("createQuote", cars,
+				random -> tryCreateQuote(company, randomConstraints(random, carTypes, region), random));
+
+		// only distinct periods miss the quote cache
+		runner.run("createQuote/repeated", cars,
+				random -> tryCreateQuote(company, repeatedConstraints(random, carTypes, region), random));
+
+		Logger logger = Logger.getLogger(CarRentalCompany.class.getName());
+		Handler handler = new FormattingNullHandler();
+		logger.setLevel(Level.INFO);
+		logger.setUseParentHandlers(false);
+		logger.addHandler(handler);
+		try {
+			runner.run("createQuote/logged", cars,
+					random -> tryCreateQuote(company, randomConstraints(random, carTypes, region), random));
+		} finally {
+			logger.removeHandler(handler);
+			logger.setUseParentHandlers(true);
+			logger.setLevel(Level.WARNING);
+		}
+
+		// every booking is cancelled again, so the fleet does not fill up
+		runner.run("confirmQuote+cancelReservation", cars, random -> {
+			Quote quote = tryCreateQuote(company, randomConstraints(random, carTypes, region), random);
+			if (quote == null)
+				return null;
+			Reservation reservation = company.confirmQuote(quote);
+			company.cancelReservation(reservation);
+			return reservation;
+		});
+
+		runner.run("getAvailableCarTypes", cars, random -> {
+			int startDay = randomDay(random);
+			return company.getAvailableCarTypes(EpochDays.toDate(startDay), EpochDays.toDate(startDay + 1 + random.nextInt(7)));
+		});
+
+		runner.run("getReservationsByRenter", cars,
+				random -> company.getReservationsByRenter(SyntheticFleet.renterName(random.nextInt(renters))));
+
+		runner.run("getReservationsByRenter/paged", cars,
+				random -> company.getReservationsByRenter(SyntheticFleet.renterName(random.nextInt(renters)),
+						ReservationPage.FIRST_PAGE, 100));
+	}
+
+	/**********
+	 * AGENCY *
+	 **********/
+
+	private static void runAgencyBenchmarks(BenchmarkRunner runner, int cars, SyntheticFleet fleet,
+			RentalAgency agency, int renters) throws Exception {
+		ManagerSession manager = agency.getNewManagerSession("benchmark");
+		ReservationSession session = agency.getNewReservationSession("benchmark");
+		List<CarType> carTypes = fleet.getCarTypes();
+
+		runner.run("agency.getBestCustomers", cars, random -> agency.getBestCustomers(manager));
+
+		runner.run("agency.getMostPopularCarType", cars,
+				random -> agency.getMostPopularCarType(manager, fleet.getName(), 2020 + random.nextInt(2)));
+
+		runner.run("agency.getNumberOfReservationsByRenter", cars,
+				random -> agency.getNumberOfReservationsByRenter(manager, SyntheticFleet.renterName(random.nextInt(renters))));
+
+		runner.run("agency.getNumberOfReservationsForCarType", cars,
+				random -> agency.getNumberOfReservationsForCarType(manager, fleet.getName(),
+						carTypes.get(random.nextInt(carTypes.size())).getName()));
+
+		runner.run("agency.checkForAvailableCarTypes", cars, random -> {
+			int startDay = randomDay(random);
+			return agency.checkForAvailableCarTypes(session,
+					new AvailabilityWindow(EpochDays.toDate(startDay), EpochDays.toDate(startDay + 3), null));
+		});
+
+		runner.run("agency.getCheapestCarType", cars, random -> {
+			int startDay = randomDay(random);
+			return agency.getCheapestCarType(session, new AvailabilityWindow(EpochDays.toDate(startDay),
+					EpochDays.toDate(startDay + 3), fleet.getRegions().get(0)));
+		});
+	}
+
+	/***********
+	 * SCALING *
+	 ***********/
+
+	/**
+	 * Runs the read path, the write path and the agency-wide availability query on an
+	 * increasing number of threads, all against the same company.
+	 */
+	private static void runScalingBenchmarks(BenchmarkRunner runner, int cars, SyntheticFleet fleet,
+			CarRentalCompany company, RentalAgency agency, int[] threadCounts) throws Exception {
+		List<CarType> carTypes = fleet.getCarTypes();
+		String region = fleet.getRegions().get(0);
+		ReservationSession session = agency.getNewReservationSession("benchmark");
+
+		for (int threads : threadCounts) {
+			runner.runConcurrently("createQuote/threads=" + threads, cars, threads,
+					random -> tryCreateQuote(company, randomConstraints(random, carTypes, region), random));
+
+			runner.runConcurrently("confirmQuote+cancelReservation/threads=" + threads, cars, threads, random -> {
+				Quote quote = tryCreateQuote(company, randomConstraints(random, carTypes, region), random);
+				if (quote == null)
+					return null;
+				Reservation reservation;
+				try {
+					reservation = company.confirmQuote(quote);
+				} catch (ReservationException e) {
+					// another thread booked the last free car of the type in between
+					return null;
+				}
+				company.cancelReservation(reservation);
+				return reservation;
+			});
+
+			runner.runConcurrently("agency.checkForAvailableCarTypes/threads=" + threads, cars, threads, random -> {
+				int startDay = randomDay(random);
+				return agency.checkForAvailableCarTypes(session,
+						new AvailabilityWindow(EpochDays.toDate(startDay), EpochDays.toDate(startDay + 3), null));
+			});
+		}
+	}
+
+	/***********
+	 * HELPERS *
+	 ***********/
+
+	private static int randomDay(SplittableRandom random) {
+		return SyntheticFleet.FIRST_DAY + random.nextInt(SyntheticFleet.HORIZON_DAYS);
+	}
+
+	private static ReservationConstraints randomConstraints(SplittableRandom random, List<CarType> carTypes, String region) {
+		int startDay = randomDay(random);
+		return new ReservationConstraints(EpochDays.toDate(startDay), EpochDays.toDate(startDay + 1 + random.nextInt(7)),
+				carTypes.get(random.nextInt(carTypes.size())).getName(), region);
+	}
+
+	/**
+	 * @return constraints out of a small set, as sent by clients that browse the same offers
+	 */
+	private static ReservationConstraints repeatedConstraints(SplittableRandom random, List<CarType> carTypes, String region) {
+		int startDay = SyntheticFleet.FIRST_DAY + random.nextInt(16);
+		return new ReservationConstraints(EpochDays.toDate(startDay), EpochDays.toDate(startDay + 3),
+				carTypes.get(random.nextInt(carTypes.size())).getName(), region);
+	}
+
+	/**
+	 * @return the quote, or null if no car satisfies the constraints
+	 */
+	private static Quote tryCreateQuote(CarRentalCompany company, ReservationConstraints constraints,
+			SplittableRandom random) {
+		try {
+			return company.createQuote(constraints, SyntheticFleet.renterName(random.nextInt(1000)));
+		} catch (ReservationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Formats every record like a console handler would, but discards the output.
+	 */
+	private static class FormattingNullHandler extends Handler {
+
+		private final SimpleFormatter formatter = new SimpleFormatter();
+		private int length;
+
+		@Override
+		public void publish(LogRecord record) {
+			length += formatter.format(record).length();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package rental;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Company generated from the car types of a company data file (hertz.csv, dockx.csv),
+ * with the number of cars per type scaled to a requested fleet size and with random
+ * historic reservations.
+ */
+final class SyntheticFleet {
+
+	// reservations are spread over the years 2020 and 2021
+	static final int FIRST_DAY = EpochDays.of(new GregorianCalendar(2020, 0, 1).getTime());
+	static final int HORIZON_DAYS = 2 * 365;
+	private static final int MAX_RENTAL_DAYS = 7;
+
+	private final String name;
+	private final List<String> regions;
+	private final List<CarType> carTypes = new ArrayList<>();
+	private final List<Integer> counts = new ArrayList<>();
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	/**
+	 * Reads the company name, its regions and its car types from a data file.
+	 */
+	SyntheticFleet(String datafile) throws IOException {
+		String companyName = null;
+		List<String> companyRegions = null;
+		try (BufferedReader in = new BufferedReader(new FileReader(datafile))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith("#") || line.trim().isEmpty())
+					continue;
+				String[] fields = line.split(",");
+				if (line.startsWith("-")) {
+					companyName = fields[0].substring(1);
+					companyRegions = Arrays.asList(fields[1].split(":"));
+				} else {
+					carTypes.add(new CarType(fields[0], Integer.parseInt(fields[1]), Float.parseFloat(fields[2]),
+							Double.parseDouble(fields[3]), Boolean.parseBoolean(fields[4])));
+					counts.add(Integer.parseInt(fields[5]));
+				}
+			}
+		}
+		if (companyName == null || carTypes.isEmpty())
+			throw new IOException("No company or car types in " + datafile);
+		this.name = companyName;
+		this.regions = companyRegions;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	List<String> getRegions() {
+		return regions;
+	}
+
+	List<CarType> getCarTypes() {
+		return carTypes;
+	}
+
+	/**************
+	 * GENERATION *
+	 **************/
+
+	/**
+	 * Builds a company with about the given number of cars, divided over the car
+	 * types in the same proportions as in the data file.
+	 *
+	 * @param reservationsPerCar	number of historic reservations of every car
+	 * @param renters				number of distinct renters that made these reservations
+	 */
+	CarRentalCompany generate(int cars, int reservationsPerCar, int renters, SplittableRandom random) {
+		int total = 0;
+		for (int count : counts)
+			total += count;
+
+		List<Car> fleet = new ArrayList<>(cars);
+		int uid = 0;
+		for (int t = 0; t < carTypes.size(); t++) {
+			CarType type = carTypes.get(t);
+			int typeCars = Math.max(1, (int) ((long) cars * counts.get(t) / total));
+			for (int i = 0; i < typeCars; i++)
+				fleet.add(generateCar(uid++, type, reservationsPerCar, renters, random));
+		}
+		return new CarRentalCompany(name, regions, fleet);
+	}
+
+	/**
+	 * Builds a single car with the given number of historic reservations.
+	 */
+	Car generateCar(int uid, CarType type, int reservations, int renters, SplittableRandom random) {
+		Car car = new Car(uid, type);
+		addReservations(car, reservations, renters, random);
+		return car;
+	}
+
+	/**
+	 * Adds non-overlapping reservations, evenly spread over the horizon.
+	 */
+	private void addReservations(Car car, int reservationsPerCar, int renters, SplittableRandom random) {
+		if (reservationsPerCar == 0)
+			return;
+		int slot = Math.max(1, HORIZON_DAYS / reservationsPerCar);
+		for (int i = 0; i < reservationsPerCar; i++) {
+			int length = 1 + random.nextInt(Math.max(1, Math.min(MAX_RENTAL_DAYS, slot - 1)));
+			int startDay = FIRST_DAY + i * slot + random.nextInt(Math.max(1, slot - length));
+			int endDay = startDay + length - 1;
+			double price = car.getType().getRentalPricePerDay() * Math.max(1, endDay - startDay);
+			Quote quote = new Quote(renterName(random.nextInt(renters)), startDay, endDay, name,
+					car.getType().getName(), price);
+			car.addReservation(new Reservation(quote, car.getId()));
+		}
+	}
+
+	static String renterName(int renter) {
+		return "renter" + renter;
+	}
+}
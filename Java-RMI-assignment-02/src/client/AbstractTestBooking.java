@@ -2,10 +2,10 @@ package client;
 
 import java.text.ParseException;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import rental.Reservation;
 
@@ -104,7 +104,7 @@ public abstract class AbstractTestBooking<ReservationSession, ManagerSession> ex
     /*
      * Open reservation sessions.
      */
-    protected Map<String, ReservationSession> sessions = new HashMap<String, ReservationSession>();
+    protected Map<String, ReservationSession> sessions = new ConcurrentHashMap<String, ReservationSession>();
 
     /**
      * 
@@ -2,11 +2,15 @@ package client;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.StringTokenizer;
 
@@ -21,9 +25,25 @@ import java.util.StringTokenizer;
  * 
  * This file only provides the framework for a scripted testing. Subclasses are expected
  * to implement individual commands in the the processLine method.
+ * 
+ * The script can also be replayed as a load test, with every client in its own thread
+ * (see LoadDriver).
  */
 public abstract class AbstractTesting {
-	protected static final DateFormat DATE_FORMAT = new SimpleDateFormat("d/M/y");
+	// shared by the client threads of a load run, so parsing and formatting are synchronized
+	protected static final DateFormat DATE_FORMAT = new SimpleDateFormat("d/M/y") {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Date parse(String source, ParsePosition pos) {
+			return super.parse(source, pos);
+		}
+
+		@Override
+		public synchronized StringBuffer format(Date date, StringBuffer toAppendTo, FieldPosition pos) {
+			return super.format(date, toAppendTo, pos);
+		}
+	};
 	protected final String scriptFile;		//name of the file containing the test script
 
 	public AbstractTesting(String scriptFile) {		
@@ -33,63 +53,89 @@ public abstract class AbstractTesting {
 	/**
 	 * This is the main method that is supposed to be run by the client. For simplicity, many 
 	 * exceptions are not handled and thrown to the client.
+	 * 
+	 * The script is run once, line by line, unless load mode is switched on with
+	 * -Dload.loops=N (see LoadDriver).
 	 *  
 	 * @throws Exception
 	 */
 	final public void run() throws Exception {
-		//read script		
+		LoadDriver loadDriver = LoadDriver.fromSystemProperties();
+		if (loadDriver != null) {
+			// the clients replay their lines concurrently, so the whole script is read first
+			loadDriver.run(this, readScript());
+			return;
+		}
+
+		// a single run streams the script, so its size does not matter
+		BufferedReader in = openScript();
+		try {
+			int currentLine = 0;
+			while (in.ready()) {
+				currentLine++;
+				runOnce(new ScriptLine(currentLine, in.readLine()));
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	private void runOnce(ScriptLine line) {
+		ApplicationException appException = null;
+		try {
+			appException = process(line);
+		} catch(IllegalArgumentException iae) {
+			System.err.println(String.format("Exception caused by script line %d (%s): %s", line.number, line.text, iae.getMessage()));
+			throw iae;
+		}
+		
+		boolean shouldfail = line.shouldFail();
+		if(appException == null && shouldfail) {
+			System.err.println("command should have failed: " + line.text +" on line " + line.number );
+		} else if(appException != null && !shouldfail) {
+			System.err.println("command failed: " + line.text +" on line " + line.number );
+			appException.caughtException.printStackTrace();
+		}
+	}
+	
+	private BufferedReader openScript() throws IOException {
 		InputStream is = AbstractTesting.class.getClassLoader().getResourceAsStream(scriptFile);
-		BufferedReader in = null;
 		if (is != null) {	// scriptFile found inside a jar
-			in = new BufferedReader(new InputStreamReader(is));
+			return new BufferedReader(new InputStreamReader(is));
 		} else { 
-			in = new BufferedReader(new FileReader(scriptFile));
+			return new BufferedReader(new FileReader(scriptFile));
 		}
-		
-		int currentLine = 0;
-
-		while (in.ready()) {
-			currentLine++;
-			
-			//read line
-			String line = in.readLine();
-			//tokenize
-			StringTokenizer scriptLineTokens = new StringTokenizer(line, " ");
-			String name = scriptLineTokens.nextToken();
-			String cmdAndFlags = scriptLineTokens.nextToken();
-			
-			StringBuffer cmdTmp = new StringBuffer();
-			List<Character> flags = new ArrayList<Character>();	
-			
-			for (int i=0; i < cmdAndFlags.length(); i++) {
-				char test = cmdAndFlags.charAt(i);
-				if (Character.isLowerCase(test)) {
-					flags.add(test);
-				} else {
-					cmdTmp.append(test);
-				}
-			}			
-			
-			ApplicationException appException = null;
-			try {
-				processLine(name, cmdTmp.toString(), flags, scriptLineTokens);
-			} catch(ApplicationException ae) {
-				appException = ae;
-			} catch(IllegalArgumentException iae) {
-				System.err.println(String.format("Exception caused by script line %d (%s): %s", currentLine, line, iae.getMessage()));
-				throw iae;
-			}
-			
-			boolean shouldfail = flags.contains('c');
-			if(appException == null && shouldfail) {
-				System.err.println("command should have failed: " + line +" on line " + currentLine );
-			} else if(appException != null && !shouldfail) {
-				System.err.println("command failed: " + line +" on line " + currentLine );
-				appException.caughtException.printStackTrace();
+	}
+	
+	private List<ScriptLine> readScript() throws IOException {
+		BufferedReader in = openScript();
+		List<ScriptLine> script = new ArrayList<ScriptLine>();
+		try {
+			int currentLine = 0;
+			while (in.ready()) {
+				currentLine++;
+				script.add(new ScriptLine(currentLine, in.readLine()));
 			}
-
+		} finally {
+			in.close();
+		}
+		return script;
+	}
+	
+	/**
+	 * Executes a single script line.
+	 * 
+	 * @return the exception thrown by the application-under-test, or null if the
+	 * 	command succeeded
+	 * @throws IllegalArgumentException if the script line is unexpected
+	 */
+	final ApplicationException process(ScriptLine line) {
+		try {
+			processLine(line.name, line.cmd, line.flags, line.parameters());
+			return null;
+		} catch(ApplicationException ae) {
+			return ae;
 		}
-			
 	}
 	
 	/**
@@ -109,6 +155,48 @@ public abstract class AbstractTesting {
 	 */
 	protected abstract void processLine(String name, String cmd, List<Character> flags, StringTokenizer scriptLineTokens) throws ApplicationException;
 	
+	/**
+	 * A line of the script, split in the client name, the command and its flags. The
+	 * parameters are tokenized again for every execution.
+	 */
+	static final class ScriptLine {
+		final int number;
+		final String text;
+		final String name;
+		final String cmd;
+		final List<Character> flags = new ArrayList<Character>();
+		private final String parameters;
+		
+		ScriptLine(int number, String text) {
+			this.number = number;
+			this.text = text;
+			//tokenize
+			StringTokenizer scriptLineTokens = new StringTokenizer(text, " ");
+			this.name = scriptLineTokens.nextToken();
+			String cmdAndFlags = scriptLineTokens.nextToken();
+			
+			StringBuffer cmdTmp = new StringBuffer();
+			for (int i=0; i < cmdAndFlags.length(); i++) {
+				char test = cmdAndFlags.charAt(i);
+				if (Character.isLowerCase(test)) {
+					flags.add(test);
+				} else {
+					cmdTmp.append(test);
+				}
+			}
+			this.cmd = cmdTmp.toString();
+			this.parameters = scriptLineTokens.hasMoreTokens() ? scriptLineTokens.nextToken("") : "";
+		}
+		
+		StringTokenizer parameters() {
+			return new StringTokenizer(parameters, " ");
+		}
+		
+		boolean shouldFail() {
+			return flags.contains('c');
+		}
+	}
+	
 	public static class ApplicationException extends Exception {
 		private static final long serialVersionUID = -6918435292488413185L;
 		public Exception caughtException;
@@ -10,10 +10,12 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import rental.AvailabilityWindow;
 import rental.CarType;
 import rental.IAgency;
 import rental.ManagerSession;
 import rental.Reservation;
+import rental.ReservationConstraints;
 import rental.ReservationSession;
 
 public class Client extends AbstractTestManagement<ReservationSession, ManagerSession> {
@@ -92,7 +94,7 @@ public class Client extends AbstractTestManagement<ReservationSession, ManagerSe
 	@Override
 	protected String getCheapestCarType(ReservationSession session, Date start, Date end, String region)
 			throws Exception {
-		return carAgencyServer.getCheapestCarType(session, start, end, region).getName();
+		return carAgencyServer.getCheapestCarType(session, new AvailabilityWindow(start, end, region)).getName();
 	}
 
 	@Override
@@ -113,7 +115,7 @@ public class Client extends AbstractTestManagement<ReservationSession, ManagerSe
 
 	@Override
 	protected void checkForAvailableCarTypes(ReservationSession session, Date start, Date end) throws Exception {
-		for(CarType carType: carAgencyServer.checkForAvailableCarTypes(session, start, end)) {
+		for(CarType carType: carAgencyServer.checkForAvailableCarTypes(session, new AvailabilityWindow(start, end, null))) {
 			LOGGER.log(Level.INFO, carType.getName());
 		}
 	}
@@ -121,7 +123,7 @@ public class Client extends AbstractTestManagement<ReservationSession, ManagerSe
 	@Override
 	protected void addQuoteToSession(ReservationSession session, String name, Date start, Date end, String carType,
 			String region) throws Exception {
-		carAgencyServer.addQuoteToSession(session, name, start, end, carType, region);
+		carAgencyServer.addQuoteToSession(session, name, new ReservationConstraints(start, end, carType, region));
 	}
 
 	@Override
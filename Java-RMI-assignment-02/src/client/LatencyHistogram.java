@@ -0,0 +1,71 @@
+package client;
+
+/**
+ * Histogram of latencies in nanoseconds with a relative precision of about 1.5%.
+ *
+ * Values below 128 get a bucket of their own. Larger values are bucketed on their
+ * seven most significant bits, so the number of buckets grows with the logarithm of
+ * the largest value instead of with the value itself. Recording is constant time and
+ * never allocates.
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+	private long totalCount;
+	private long maxValue;
+
+	synchronized void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[bucketOf(value)]++;
+		totalCount++;
+		maxValue = Math.max(maxValue, value);
+	}
+
+	synchronized long getTotalCount() {
+		return totalCount;
+	}
+
+	synchronized long getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * @param percentile	percentile between 0 and 100
+	 * @return the highest value that falls in the same bucket as the given percentile,
+	 * 		or 0 if nothing was recorded
+	 */
+	synchronized long getValueAtPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+		long seen = 0;
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank)
+				return Math.min(highestValueIn(bucket), maxValue);
+		}
+		return maxValue;
+	}
+
+	/***********
+	 * HELPERS *
+	 ***********/
+
+	private static int bucketOf(long value) {
+		if (value < 2 * SUB_BUCKETS)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	private static long highestValueIn(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (bucket - shift * SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
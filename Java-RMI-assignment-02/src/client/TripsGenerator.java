@@ -0,0 +1,527 @@
+package client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates large test scripts in the format of the `trips` file.
+ *
+ * The script is a stream of trips: a client opens a session (BS), optionally checks
+ * the available car types (BA), asks one or more quotes (BB) and confirms them (BF).
+ * A fixed number of trips are open at the same time and their lines are interleaved,
+ * so the output is written line by line and only the open trips are kept in memory.
+ * In between, managers ask for the cheapest car type (MA), the most popular car types
+ * (MF) and the best clients (MB); their expected answers are computed from the trips
+ * that were written before them.
+ *
+ * Usage: java client.TripsGenerator [output file] (the script is written to standard
+ * output if no file is given), tuned with system properties:
+ * <ul>
+ * <li>trips.lines: number of lines to generate (default 1000000)</li>
+ * <li>trips.renters: number of distinct clients (default 100000)</li>
+ * <li>trips.zipf: exponent of the Zipf distribution of the client popularity (default 1.0)</li>
+ * <li>trips.year: year in which the trips start; bookings that do not fit in the fleet move to later years (default 2012)</li>
+ * <li>trips.failureRatio: fraction of the quotes that are expected to fail (default 0.05)</li>
+ * <li>trips.managerRatio: fraction of the lines that are manager queries (default 0.01)</li>
+ * <li>trips.openTrips: number of trips that are open at the same time (default 64)</li>
+ * <li>trips.companies: comma separated company data files (default hertz.csv,dockx.csv)</li>
+ * <li>trips.seed: seed of the random generator (default 42)</li>
+ * </ul>
+ *
+ * A quote that is expected to fail asks for a car type that no company rents, so it
+ * fails regardless of the other trips. Every other quote is planned so that it overlaps
+ * fewer other bookings of its car type than the company has cars of that type, so a
+ * free car is left whatever car the company picks and in whatever order the trips run.
+ * When the demand exceeds the fleet, a booking is moved to the same days of a later
+ * year. A quote only names a region in which a single company rents its car type, so
+ * it is known which company the booking ends up with.
+ *
+ * The manager checks assume that the lines run once, in order.
+ */
+public class TripsGenerator {
+
+	// relative demand per month, with peaks in the summer and around the holidays
+	private static final double[] MONTH_WEIGHTS = {0.6, 0.6, 0.8, 1.0, 1.1, 1.4, 2.0, 2.2, 1.2, 0.9, 0.7, 1.5};
+	private static final String UNKNOWN_CAR_TYPE = "Unavailable";
+	private static final int MAX_QUOTES_PER_TRIP = 4;
+	private static final int MAX_RENTAL_DAYS = 14;
+	private static final int DAYS_PER_YEAR = 365;
+	// a longer list of best clients is not checked
+	private static final int MAX_BEST_RENTERS = 8;
+
+	private final Random random;
+	private final int year;
+	private final double failureRatio;
+	private final double managerRatio;
+	private final List<CarTypeEntry> carTypes = new ArrayList<CarTypeEntry>();
+	private final List<String> companies = new ArrayList<String>();
+	private final double[] renterDistribution;
+	private final double[] carTypeDistribution;
+	private final double[] monthDistribution;
+	// number of confirmed reservations per renter, up to the line being written
+	private final Map<String, Integer> reservationsByRenter = new HashMap<String, Integer>();
+	private final Set<String> bestRenters = new HashSet<String>();
+	private int mostReservations;
+	private int lastYear;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	public TripsGenerator(List<String> companyFiles, int renters, double zipfExponent, int year,
+			double failureRatio, double managerRatio, long seed) throws IOException {
+		this.random = new Random(seed);
+		this.year = year;
+		this.failureRatio = failureRatio;
+		this.managerRatio = managerRatio;
+		this.lastYear = year;
+		for (String file : companyFiles)
+			loadCompany(file);
+		for (CarTypeEntry carType : carTypes) {
+			for (String region : carType.regions) {
+				if (rentersOf(carType.name, region) == 1)
+					carType.ownRegions.add(region);
+			}
+		}
+
+		double[] renterWeights = new double[renters];
+		for (int i = 0; i < renters; i++)
+			renterWeights[i] = 1 / Math.pow(i + 1, zipfExponent);
+		this.renterDistribution = cumulative(renterWeights);
+
+		double[] carTypeWeights = new double[carTypes.size()];
+		for (int i = 0; i < carTypeWeights.length; i++) {
+			CarTypeEntry carType = carTypes.get(i);
+			carTypeWeights[i] = carType.ownRegions.isEmpty() ? 0 : carType.nbOfCars;
+		}
+		this.carTypeDistribution = cumulative(carTypeWeights);
+		this.monthDistribution = cumulative(MONTH_WEIGHTS);
+	}
+
+	/**
+	 * Reads the company name, regions and car types (with their number of cars) from a
+	 * company data file.
+	 */
+	private void loadCompany(String file) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String company = null;
+			List<String> regions = null;
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith("#") || line.trim().isEmpty())
+					continue;
+				String[] fields = line.split(",");
+				if (line.startsWith("-")) {
+					company = fields[0].substring(1);
+					regions = Arrays.asList(fields[1].split(":"));
+					companies.add(company);
+				} else {
+					carTypes.add(new CarTypeEntry(company, regions, fields[0], Double.parseDouble(fields[3]),
+							Integer.parseInt(fields[5])));
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/************
+	 * GENERATE *
+	 ************/
+
+	/**
+	 * Writes at least the given number of lines; the trips that are still open when
+	 * that number is reached are confirmed.
+	 */
+	public void generate(Writer out, long lines, int openTrips) throws IOException {
+		if (openTrips < 1 || openTrips > renterDistribution.length)
+			throw new IllegalArgumentException("Illegal number of open trips " + openTrips);
+		List<Trip> open = new ArrayList<Trip>();
+		Set<String> openRenters = new HashSet<String>();
+		long written = 0;
+		while (written < lines) {
+			if (random.nextDouble() < managerRatio) {
+				writeManagerQuery(out);
+				written++;
+				continue;
+			}
+			while (open.size() < openTrips) {
+				Trip trip = newTrip(openRenters);
+				open.add(trip);
+				openRenters.add(trip.renter);
+			}
+			int index = random.nextInt(open.size());
+			Trip trip = open.get(index);
+			out.write(trip.nextLine());
+			out.write('\n');
+			written++;
+			if (trip.isDone()) {
+				open.set(index, open.get(open.size() - 1));
+				open.remove(open.size() - 1);
+				openRenters.remove(trip.renter);
+				confirmed(trip);
+			}
+		}
+		for (Trip trip : open) {
+			while (!trip.isDone()) {
+				out.write(trip.nextLine());
+				out.write('\n');
+			}
+		}
+		out.flush();
+	}
+
+	private Trip newTrip(Set<String> openRenters) {
+		// a client has at most one open session
+		String renter;
+		do {
+			renter = "Client" + sample(renterDistribution);
+		} while (openRenters.contains(renter));
+
+		Trip trip = new Trip(renter);
+		trip.lines.add(renter + " BS");
+		int startDay = randomDayOfYear();
+		int days = 1 + randomRentalDays();
+		if (random.nextInt(4) == 0)
+			trip.lines.add(renter + " BA " + formatDay(startDay) + " " + formatDay(startDay + days));
+		int quotes = 1 + random.nextInt(MAX_QUOTES_PER_TRIP);
+		for (int i = 0; i < quotes; i++) {
+			if (random.nextDouble() < failureRatio) {
+				trip.lines.add(renter + " BBc " + formatDay(startDay) + " " + formatDay(startDay + days) + " "
+						+ UNKNOWN_CAR_TYPE + " " + companyRegion(carTypes.get(0)));
+			} else {
+				CarTypeEntry carType = carTypes.get(sample(carTypeDistribution));
+				Booking booking = carType.book(startDay, startDay + days);
+				startDay = booking.startDay;
+				trip.bookings.add(booking);
+				String region = carType.ownRegions.get(random.nextInt(carType.ownRegions.size()));
+				trip.lines.add(renter + " BB " + formatDay(startDay) + " " + formatDay(startDay + days) + " "
+						+ carType.name + " " + region);
+			}
+			// the next quote of the trip is for the following days
+			startDay += days + 1;
+			days = 1 + randomRentalDays();
+		}
+		// a failed quote is not added to the session, so confirming the others succeeds
+		trip.lines.add(renter + " BF");
+		return trip;
+	}
+
+	/**
+	 * Counts the bookings of a trip whose lines are all written.
+	 */
+	private void confirmed(Trip trip) {
+		if (trip.bookings.isEmpty())
+			return;
+		Integer before = reservationsByRenter.get(trip.renter);
+		int count = (before == null ? 0 : before) + trip.bookings.size();
+		reservationsByRenter.put(trip.renter, count);
+		if (count > mostReservations) {
+			mostReservations = count;
+			bestRenters.clear();
+		}
+		if (count == mostReservations)
+			bestRenters.add(trip.renter);
+		for (Booking booking : trip.bookings) {
+			int bookingYear = yearOf(booking.startDay);
+			Integer reservations = booking.carType.reservationsByYear.get(bookingYear);
+			booking.carType.reservationsByYear.put(bookingYear, reservations == null ? 1 : reservations + 1);
+			lastYear = Math.max(lastYear, bookingYear);
+		}
+	}
+
+	private void writeManagerQuery(Writer out) throws IOException {
+		String company = companies.get(random.nextInt(companies.size()));
+		int kind = random.nextInt(3);
+		if (kind == 0) {
+			CarTypeEntry any = carTypes.get(random.nextInt(carTypes.size()));
+			String region = companyRegion(any);
+			int startDay = randomDayOfYear();
+			int endDay = startDay + 1 + randomRentalDays();
+			// only ask for periods in which one of the cheapest car types is sure to be free
+			while (!isCheapestFree(region, startDay, endDay)) {
+				startDay += DAYS_PER_YEAR;
+				endDay += DAYS_PER_YEAR;
+			}
+			out.write(company + " MA " + formatDay(startDay) + " " + formatDay(endDay) + " "
+					+ cheapestCarTypesIn(region) + " " + region);
+		} else if (kind == 2 && !bestRenters.isEmpty() && bestRenters.size() <= MAX_BEST_RENTERS) {
+			out.write(company + " MB " + join(bestRenters));
+		} else {
+			int popularYear = year + random.nextInt(lastYear - year + 1);
+			out.write(company + " MF " + join(mostPopularCarTypes(company, popularYear)) + " " + popularYear);
+		}
+		out.write('\n');
+	}
+
+	/***********
+	 * HELPERS *
+	 ***********/
+
+	private String cheapestCarTypesIn(String region) {
+		double cheapest = Double.MAX_VALUE;
+		for (CarTypeEntry carType : carTypes) {
+			if (carType.regions.contains(region))
+				cheapest = Math.min(cheapest, carType.pricePerDay);
+		}
+		StringBuilder names = new StringBuilder();
+		for (CarTypeEntry carType : carTypes) {
+			if (carType.regions.contains(region) && carType.pricePerDay == cheapest)
+				names.append(names.length() == 0 ? "" : "/").append(carType.name);
+		}
+		return names.toString();
+	}
+
+	private boolean isCheapestFree(String region, int startDay, int endDay) {
+		String cheapest = cheapestCarTypesIn(region);
+		for (CarTypeEntry carType : carTypes) {
+			if (carType.regions.contains(region) && Arrays.asList(cheapest.split("/")).contains(carType.name)
+					&& carType.isSurelyFree(startDay, endDay))
+				return true;
+		}
+		return false;
+	}
+
+	private List<String> mostPopularCarTypes(String company, int popularYear) {
+		int most = -1;
+		List<String> names = new ArrayList<String>();
+		for (CarTypeEntry carType : carTypes) {
+			if (!carType.company.equals(company))
+				continue;
+			Integer reservations = carType.reservationsByYear.get(popularYear);
+			int count = reservations == null ? 0 : reservations;
+			if (count > most) {
+				most = count;
+				names.clear();
+			}
+			if (count == most)
+				names.add(carType.name);
+		}
+		return names;
+	}
+
+	/**
+	 * @return the number of companies that rent the given car type in the given region
+	 */
+	private int rentersOf(String carTypeName, String region) {
+		int companies = 0;
+		for (CarTypeEntry carType : carTypes) {
+			if (carType.name.equals(carTypeName) && carType.regions.contains(region))
+				companies++;
+		}
+		return companies;
+	}
+
+	private String companyRegion(CarTypeEntry carType) {
+		return carType.regions.get(random.nextInt(carType.regions.size()));
+	}
+
+	/**
+	 * @return a day of the year (0-based), following the seasonal demand
+	 */
+	private int randomDayOfYear() {
+		int month = sample(monthDistribution);
+		GregorianCalendar calendar = new GregorianCalendar(year, month, 1);
+		int dayOfMonth = random.nextInt(calendar.getActualMaximum(GregorianCalendar.DAY_OF_MONTH));
+		return calendar.get(GregorianCalendar.DAY_OF_YEAR) - 1 + dayOfMonth;
+	}
+
+	/**
+	 * @return a rental length, mostly short and at most MAX_RENTAL_DAYS
+	 */
+	private int randomRentalDays() {
+		int days = 0;
+		while (days < MAX_RENTAL_DAYS - 1 && random.nextInt(3) != 0)
+			days++;
+		return days;
+	}
+
+	private int yearOf(int dayOfYear) {
+		GregorianCalendar calendar = new GregorianCalendar(year, 0, 1);
+		calendar.add(GregorianCalendar.DAY_OF_YEAR, dayOfYear);
+		return calendar.get(GregorianCalendar.YEAR);
+	}
+
+	private static String join(Iterable<String> names) {
+		StringBuilder joined = new StringBuilder();
+		for (String name : names)
+			joined.append(joined.length() == 0 ? "" : "/").append(name);
+		return joined.toString();
+	}
+
+	private String formatDay(int dayOfYear) {
+		GregorianCalendar calendar = new GregorianCalendar(year, 0, 1);
+		calendar.add(GregorianCalendar.DAY_OF_YEAR, dayOfYear);
+		return calendar.get(GregorianCalendar.DAY_OF_MONTH) + "/" + (calendar.get(GregorianCalendar.MONTH) + 1)
+				+ "/" + calendar.get(GregorianCalendar.YEAR);
+	}
+
+	private static double[] cumulative(double[] weights) {
+		double[] distribution = new double[weights.length];
+		double sum = 0;
+		for (int i = 0; i < weights.length; i++) {
+			sum += weights[i];
+			distribution[i] = sum;
+		}
+		for (int i = 0; i < distribution.length; i++)
+			distribution[i] /= sum;
+		return distribution;
+	}
+
+	/**
+	 * @return an index drawn from the given cumulative distribution
+	 */
+	private int sample(double[] distribution) {
+		int index = Arrays.binarySearch(distribution, random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, distribution.length - 1);
+	}
+
+	private static class CarTypeEntry {
+		final String company;
+		final List<String> regions;
+		final String name;
+		final double pricePerDay;
+		final int nbOfCars;
+		// regions in which no other company rents a car type with this name
+		final List<String> ownRegions = new ArrayList<String>();
+		final Map<Integer, Integer> reservationsByYear = new HashMap<Integer, Integer>();
+		// planned bookings per day
+		private final List<List<Booking>> bookingsByDay = new ArrayList<List<Booking>>();
+		// per day of the year, the first year in which a booking that starts on it may still fit
+		private final int[] firstYearByDay = new int[DAYS_PER_YEAR];
+
+		CarTypeEntry(String company, List<String> regions, String name, double pricePerDay, int nbOfCars) {
+			this.company = company;
+			this.regions = regions;
+			this.name = name;
+			this.pricePerDay = pricePerDay;
+			this.nbOfCars = nbOfCars;
+		}
+
+		/**
+		 * Plans a booking for the closed period [startDay, endDay], or for the same days
+		 * of the first later year in which it can be planned.
+		 */
+		Booking book(int startDay, int endDay) {
+			int dayOfYear = startDay % DAYS_PER_YEAR;
+			int years = Math.max(startDay / DAYS_PER_YEAR, firstYearByDay[dayOfYear]);
+			Booking booking;
+			while ((booking = tryBook(dayOfYear + years * DAYS_PER_YEAR, endDay - startDay + dayOfYear + years * DAYS_PER_YEAR)) == null)
+				years++;
+			firstYearByDay[dayOfYear] = years;
+			return booking;
+		}
+
+		/**
+		 * Plans a booking for the closed period [startDay, endDay], unless it or one of
+		 * the bookings it overlaps would then overlap as many other bookings as there
+		 * are cars. As long as that holds, every booking finds a free car.
+		 *
+		 * @return the booking, or null if it was not planned
+		 */
+		private Booking tryBook(int startDay, int endDay) {
+			Set<Booking> overlapping = overlapping(startDay, endDay);
+			if (overlapping.size() >= nbOfCars)
+				return null;
+			for (Booking other : overlapping) {
+				if (other.overlaps + 1 >= nbOfCars)
+					return null;
+			}
+			Booking booking = new Booking(this, startDay, overlapping.size());
+			for (Booking other : overlapping)
+				other.overlaps++;
+			for (int day = startDay; day <= endDay; day++)
+				bookingsOn(day).add(booking);
+			return booking;
+		}
+
+		/**
+		 * @return whether a car is free in the closed period [startDay, endDay], even
+		 * 	if all planned bookings are confirmed
+		 */
+		boolean isSurelyFree(int startDay, int endDay) {
+			return overlapping(startDay, endDay).size() < nbOfCars;
+		}
+
+		private Set<Booking> overlapping(int startDay, int endDay) {
+			Set<Booking> overlapping = new HashSet<Booking>();
+			for (int day = startDay; day <= endDay && day < bookingsByDay.size(); day++)
+				overlapping.addAll(bookingsByDay.get(day));
+			return overlapping;
+		}
+
+		private List<Booking> bookingsOn(int day) {
+			while (bookingsByDay.size() <= day)
+				bookingsByDay.add(new ArrayList<Booking>(0));
+			return bookingsByDay.get(day);
+		}
+	}
+
+	private static class Booking {
+		final CarTypeEntry carType;
+		final int startDay;
+		// number of other planned bookings of the car type that overlap this one
+		int overlaps;
+
+		Booking(CarTypeEntry carType, int startDay, int overlaps) {
+			this.carType = carType;
+			this.startDay = startDay;
+			this.overlaps = overlaps;
+		}
+	}
+
+	private static class Trip {
+		final String renter;
+		final List<String> lines = new ArrayList<String>();
+		final List<Booking> bookings = new ArrayList<Booking>();
+		private int next;
+
+		Trip(String renter) {
+			this.renter = renter;
+		}
+
+		String nextLine() {
+			return lines.get(next++);
+		}
+
+		boolean isDone() {
+			return next == lines.size();
+		}
+	}
+
+	/********
+	 * MAIN *
+	 ********/
+
+	public static void main(String[] args) throws IOException {
+		TripsGenerator generator = new TripsGenerator(
+				Arrays.asList(System.getProperty("trips.companies", "hertz.csv,dockx.csv").split(",")),
+				Integer.getInteger("trips.renters", 100000),
+				Double.parseDouble(System.getProperty("trips.zipf", "1.0")),
+				Integer.getInteger("trips.year", 2012),
+				Double.parseDouble(System.getProperty("trips.failureRatio", "0.05")),
+				Double.parseDouble(System.getProperty("trips.managerRatio", "0.01")),
+				Long.getLong("trips.seed", 42));
+		Writer out = new BufferedWriter(args.length > 0 ? new FileWriter(args[0]) : new OutputStreamWriter(System.out), 1 << 16);
+		try {
+			generator.generate(out, Long.getLong("trips.lines", 1000000), Integer.getInteger("trips.openTrips", 64));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A period, optionally restricted to a region, for which a company is asked which
+ * car types it has available.
+ */
+public class AvailabilityWindow implements Serializable {
+
+	private int startDay;
+	private int endDay;
+	private String region;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	/**
+	 * @param region	region in which the cars must be available, or null for any region
+	 */
+	public AvailabilityWindow(Date start, Date end, String region) {
+		this.startDay = EpochDays.of(start);
+		this.endDay = EpochDays.of(end);
+		this.region = region;
+	}
+
+	public Date getStartDate() {
+		return EpochDays.toDate(startDay);
+	}
+
+	int getStartDay() {
+		return startDay;
+	}
+
+	public Date getEndDate() {
+		return EpochDays.toDate(endDay);
+	}
+
+	int getEndDay() {
+		return endDay;
+	}
+
+	public String getRegion() {
+		return region;
+	}
+
+	/*************
+	 * TO STRING *
+	 *************/
+
+	@Override
+	public String toString() {
+		return String.format("Availability window [from %s until %s in region '%s']",
+				getStartDate(), getEndDate(), getRegion());
+	}
+}
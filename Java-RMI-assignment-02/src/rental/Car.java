@@ -1,15 +1,15 @@
 package rental;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Car implements Serializable {
 
     private int id;
     private CarType type;
-    private List<Reservation> reservations;
+    private AtomicReference<ReservationIndex> reservations;
 
     /***************
      * CONSTRUCTOR *
@@ -18,7 +18,7 @@ public class Car implements Serializable {
     public Car(int uid, CarType type) {
     	this.id = uid;
         this.type = type;
-        this.reservations = new ArrayList<Reservation>();
+        this.reservations = new AtomicReference<ReservationIndex>(ReservationIndex.EMPTY);
     }
 
     /******
@@ -45,24 +45,55 @@ public class Car implements Serializable {
         if(!start.before(end))
             throw new IllegalArgumentException("Illegal given period");
 
-        for(Reservation reservation : reservations) {
-            if(reservation.getEndDate().before(start) || reservation.getStartDate().after(end))
-                continue;
-            return false;
-        }
-        return true;
+        return isAvailable(EpochDays.of(start), EpochDays.of(end));
+    }
+    
+    boolean isAvailable(int startDay, int endDay) {
+        return !reservations.get().overlaps(startDay, endDay);
     }
     
     public void addReservation(Reservation res) {
-        reservations.add(res);
+        if(!tryAddReservation(res))
+            throw new IllegalArgumentException("Car " + id + " is not available for " + res);
     }
     
-    public void removeReservation(Reservation reservation) {
-        // equals-method for Reservation is required!
-        reservations.remove(reservation);
+    /**
+     * Atomically adds the reservation if the car is still available in its period.
+     * The reservations are published as an immutable snapshot that is swapped with a
+     * compare-and-set, so concurrent bookings of the same car never overlap and
+     * bookings of different cars never wait for each other.
+     * 
+     * @return false if the car is not available (anymore)
+     */
+    boolean tryAddReservation(Reservation res) {
+        while(true) {
+            ReservationIndex current = reservations.get();
+            if(current.overlaps(res.getStartDay(), res.getEndDay()))
+                return false;
+            if(reservations.compareAndSet(current, current.with(res)))
+                return true;
+        }
+    }
+    
+    public boolean removeReservation(Reservation reservation) {
+        while(true) {
+            ReservationIndex current = reservations.get();
+            ReservationIndex updated = current.without(reservation);
+            if(updated == current)
+                return false;
+            if(reservations.compareAndSet(current, updated))
+                return true;
+        }
     }
     
     public List<Reservation> getReservations() {
-    	return reservations;
+    	return reservations.get().asList();
+    }
+    
+    /**
+     * @return the current, immutable snapshot of the reservations of this car
+     */
+    ReservationIndex getReservationIndex() {
+        return reservations.get();
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * Open-addressing map from car uid to car.
+ *
+ * Keys are kept in a primitive int array and collisions are resolved with linear
+ * probing, so a lookup neither boxes the uid nor allocates.
+ */
+class CarMap implements Serializable {
+
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private int[] keys;
+	private Car[] cars;
+	private int size;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	CarMap(int expectedSize) {
+		int capacity = MINIMUM_CAPACITY;
+		while (capacity < expectedSize * 2)
+			capacity <<= 1;
+		keys = new int[capacity];
+		cars = new Car[capacity];
+	}
+
+	/*********
+	 * QUERY *
+	 *********/
+
+	/**
+	 * @return the car with the given uid, or null if there is none
+	 */
+	Car get(int uid) {
+		int mask = keys.length - 1;
+		for (int i = indexFor(uid, mask); cars[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == uid)
+				return cars[i];
+		}
+		return null;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**********
+	 * UPDATE *
+	 **********/
+
+	void put(Car car) {
+		if ((size + 1) * 2 > keys.length)
+			resize(keys.length * 2);
+		if (insert(car))
+			size++;
+	}
+
+	/***********
+	 * HELPERS *
+	 ***********/
+
+	private boolean insert(Car car) {
+		int mask = keys.length - 1;
+		int i = indexFor(car.getId(), mask);
+		while (cars[i] != null) {
+			if (keys[i] == car.getId()) {
+				cars[i] = car;
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = car.getId();
+		cars[i] = car;
+		return true;
+	}
+
+	private void resize(int capacity) {
+		Car[] oldCars = cars;
+		keys = new int[capacity];
+		cars = new Car[capacity];
+		for (Car car : oldCars) {
+			if (car != null)
+				insert(car);
+		}
+	}
+
+	private static int indexFor(int uid, int mask) {
+		// Fibonacci hashing spreads consecutive uids over the whole table
+		int h = uid * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
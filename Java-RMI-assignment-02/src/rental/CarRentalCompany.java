@@ -5,10 +5,14 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,23 +20,59 @@ import java.util.logging.Logger;
 public class CarRentalCompany implements ICarRentalCompany {
 
 	private static Logger logger = Logger.getLogger(CarRentalCompany.class.getName());
+	// per-request events, of which one in -Drental.logSampleRate=N is logged
+	private static EventLog requestLog = new EventLog(logger, Level.INFO, Integer.getInteger("rental.logSampleRate", 1));
+	
+	public static final int DEFAULT_QUOTE_CACHE_SIZE = 1024;
 	
 	private List<String> regions;
 	private String name;
-	private List<Car> cars;
+	private Car[] cars;
+	private CarMap carsById;
 	private Map<String,CarType> carTypes = new HashMap<String, CarType>();
+	private Map<String,Car[]> carsByType = new HashMap<String, Car[]>();
+	private Map<String,CarTypeOccupancy> occupancies = new HashMap<String, CarTypeOccupancy>();
+	private Map<String,Integer> reservationCountByRenter = new ConcurrentHashMap<String, Integer>();
+	// kept up to date with reservationCountByRenter; counts change under the read lock,
+	// statistics are added and removed under the write lock
+	private List<RenterStatistics> renterStatistics = new CopyOnWriteArrayList<RenterStatistics>();
+	private ReadWriteLock renterStatisticsLock = new ReentrantReadWriteLock();
+	private ReservationHistogram reservationHistogram = new ReservationHistogram();
+	private QuoteCache quoteCache;
 
 	/***************
 	 * CONSTRUCTOR *
 	 ***************/
 
 	public CarRentalCompany(String name, List<String> regions, List<Car> cars) {
+		this(name, regions, cars, DEFAULT_QUOTE_CACHE_SIZE);
+	}
+	
+	/**
+	 * @param quoteCacheSize	maximum number of cached quote outcomes, 0 disables the cache
+	 */
+	public CarRentalCompany(String name, List<String> regions, List<Car> cars, int quoteCacheSize) {
 		logger.log(Level.INFO, "<{0}> Car Rental Company {0} starting up...", name);
 		setName(name);
-		this.cars = cars;
+		this.cars = cars.toArray(new Car[0]);
+		this.carsById = new CarMap(cars.size());
 		setRegions(regions);
-		for(Car car:cars)
+		Map<String,List<Car>> fleetByType = new HashMap<String, List<Car>>();
+		for(Car car:cars) {
+			carsById.put(car);
+			for(Reservation reservation: car.getReservations()) {
+				reservationCountByRenter.merge(reservation.getCarRenter(), 1, Integer::sum);
+				reservationHistogram.add(reservation.getCarType(), reservation.getStartDay(), 1);
+			}
 			carTypes.put(car.getType().getName(), car.getType());
+			fleetByType.computeIfAbsent(car.getType().getName(), type -> new ArrayList<Car>()).add(car);
+		}
+		for(Map.Entry<String,List<Car>> entry: fleetByType.entrySet()) {
+			Car[] fleet = entry.getValue().toArray(new Car[0]);
+			carsByType.put(entry.getKey(), fleet);
+			occupancies.put(entry.getKey(), new CarTypeOccupancy(fleet));
+		}
+		this.quoteCache = new QuoteCache(quoteCacheSize, carsByType.keySet());
 		logger.log(Level.INFO, this.toString());
 	}
 
@@ -79,9 +119,16 @@ public class CarRentalCompany implements ICarRentalCompany {
 	
 	// mark
 	public boolean isAvailable(String carTypeName, Date start, Date end) {
-		logger.log(Level.INFO, "<{0}> Checking availability for car type {1}", new Object[]{name, carTypeName});
+		checkPeriod(start, end);
+		return isAvailable(carTypeName, EpochDays.of(start), EpochDays.of(end));
+	}
+	
+	private boolean isAvailable(String carTypeName, int startDay, int endDay) {
+		if(requestLog.isLoggable())
+			requestLog.log("<{0}> Checking availability for car type {1}", name, carTypeName);
+		checkPeriod(startDay, endDay);
 		if(carTypes.containsKey(carTypeName)) {
-			return getAvailableCarTypes(start, end).contains(carTypes.get(carTypeName));
+			return occupancies.get(carTypeName).isAnyCarFree(startDay, endDay);
 		} else {
 			return false;
 			//throw new IllegalArgumentException("<" + carTypeName + "> No car type of name " + carTypeName);
@@ -89,35 +136,84 @@ public class CarRentalCompany implements ICarRentalCompany {
 	}
 	
 	public Set<CarType> getAvailableCarTypes(Date start, Date end) {
+		checkPeriod(start, end);
+		return getAvailableCarTypes(EpochDays.of(start), EpochDays.of(end));
+	}
+	
+	private Set<CarType> getAvailableCarTypes(int startDay, int endDay) {
+		checkPeriod(startDay, endDay);
 		Set<CarType> availableCarTypes = new HashSet<CarType>();
-		for (Car car : cars) {
-			if (car.isAvailable(start, end)) {
-				availableCarTypes.add(car.getType());
+		for (Map.Entry<String,CarTypeOccupancy> entry : occupancies.entrySet()) {
+			if (entry.getValue().isAnyCarFree(startDay, endDay)) {
+				availableCarTypes.add(carTypes.get(entry.getKey()));
 			}
 		}
 		return availableCarTypes;
 	}
 	
+	public List<List<CarTypeOffer>> getAvailableCarTypeOffers(List<AvailabilityWindow> windows) {
+		List<List<CarTypeOffer>> offers = new ArrayList<>(windows.size());
+		for (AvailabilityWindow window : windows) {
+			List<CarTypeOffer> windowOffers = new ArrayList<>();
+			if (window.getRegion() == null || operatesInRegion(window.getRegion())) {
+				for (CarType carType : getAvailableCarTypes(window.getStartDay(), window.getEndDay())) {
+					double price = calculateRentalPrice(carType.getRentalPricePerDay(), window.getStartDay(), window.getEndDay());
+					windowOffers.add(new CarTypeOffer(carType, price));
+				}
+			}
+			offers.add(windowOffers);
+		}
+		return offers;
+	}
+	
+	/**
+	 * @return the occupancy bitmaps of the given car type, or null if there are no cars of that type
+	 */
+	CarTypeOccupancy getOccupancy(String carType) {
+		return occupancies.get(carType);
+	}
+	
+	private static void checkPeriod(Date start, Date end) {
+		if(!start.before(end))
+			throw new IllegalArgumentException("Illegal given period");
+	}
+	
+	private static void checkPeriod(int startDay, int endDay) {
+		if(startDay >= endDay)
+			throw new IllegalArgumentException("Illegal given period");
+	}
+	
 	/*********
 	 * CARS *
 	 *********/
 	
 	private Car getCar(int uid) {
-		for (Car car : cars) {
-			if (car.getId() == uid)
-				return car;
-		}
+		Car car = carsById.get(uid);
+		if (car != null)
+			return car;
 		throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
 	}
 	
-	private List<Car> getAvailableCars(String carType, Date start, Date end) {
-		List<Car> availableCars = new LinkedList<Car>();
-		for (Car car : cars) {
-			if (car.getType().getName().equals(carType) && car.isAvailable(start, end)) {
-				availableCars.add(car);
+	/**
+	 * Picks a random car of the given type that is available in the given period.
+	 * Only the cars of that type are visited and a uniformly random one is chosen
+	 * with reservoir sampling, so no list of candidates has to be built.
+	 * 
+	 * @return the chosen car, or null if no car of the type is available
+	 */
+	private Car getRandomAvailableCar(String carType, int startDay, int endDay) {
+		Car[] fleet = carsByType.get(carType);
+		if (fleet == null)
+			return null;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Car chosen = null;
+		int nbAvailable = 0;
+		for (Car car : fleet) {
+			if (car.isAvailable(startDay, endDay) && random.nextInt(++nbAvailable) == 0) {
+				chosen = car;
 			}
 		}
-		return availableCars;
+		return chosen;
 	}
 
 	/****************
@@ -126,47 +222,83 @@ public class CarRentalCompany implements ICarRentalCompany {
 
 	public Quote createQuote(ReservationConstraints constraints, String client)
 			throws ReservationException {
-		logger.log(Level.INFO, "<{0}> Creating tentative reservation for {1} with constraints {2}", 
-                        new Object[]{name, client, constraints.toString()});
+		if(requestLog.isLoggable())
+			requestLog.log("<{0}> Creating tentative reservation for {1} with constraints {2}", name, client, constraints);
 		
 				
-		if(!operatesInRegion(constraints.getRegion()) || !isAvailable(constraints.getCarType(), constraints.getStartDate(), constraints.getEndDate()))
+		double price = getQuotePrice(constraints);
+		if(Double.isNaN(price))
 			throw new ReservationException("<" + name
 				+ "> No cars available to satisfy the given constraints.");
-
-		CarType type = getCarType(constraints.getCarType());
 		
-		double price = calculateRentalPrice(type.getRentalPricePerDay(),constraints.getStartDate(), constraints.getEndDate());
+		return new Quote(client, constraints.getStartDay(), constraints.getEndDay(), getName(), constraints.getCarType(), price);
+	}
+
+	/**
+	 * Looks up the price of a quote for the given constraints in the quote cache and
+	 * computes it on a miss.
+	 * 
+	 * @return the price, or QuoteCache.UNAVAILABLE if no car satisfies the constraints
+	 */
+	private double getQuotePrice(ReservationConstraints constraints) {
+		Double cached = quoteCache.get(constraints);
+		if(cached != null)
+			return cached;
 		
-		return new Quote(client, constraints.getStartDate(), constraints.getEndDate(), getName(), constraints.getCarType(), price);
+		long version = quoteCache.version(constraints.getCarType());
+		double price = QuoteCache.UNAVAILABLE;
+		if(operatesInRegion(constraints.getRegion()) && isAvailable(constraints.getCarType(), constraints.getStartDay(), constraints.getEndDay())) {
+			CarType type = getCarType(constraints.getCarType());
+			price = calculateRentalPrice(type.getRentalPricePerDay(), constraints.getStartDay(), constraints.getEndDay());
+		}
+		quoteCache.put(constraints, price, version);
+		return price;
+	}
+	
+	public QuoteCacheStatistics getQuoteCacheStatistics() {
+		return quoteCache.statistics();
 	}
 
 	// Implementation can be subject to different pricing strategies
 	public double calculateRentalPrice(double rentalPricePerDay, Date start, Date end) {
-		return rentalPricePerDay * Math.ceil((end.getTime() - start.getTime())
-						/ (1000 * 60 * 60 * 24D));
+		return calculateRentalPrice(rentalPricePerDay, EpochDays.of(start), EpochDays.of(end));
+	}
+	
+	private double calculateRentalPrice(double rentalPricePerDay, int startDay, int endDay) {
+		return rentalPricePerDay * (endDay - startDay);
 	}
 
 	public Reservation confirmQuote(Quote quote) throws ReservationException {
-		logger.log(Level.INFO, "<{0}> Reservation of {1}", new Object[]{name, quote.toString()});
-		List<Car> availableCars = getAvailableCars(quote.getCarType(), quote.getStartDate(), quote.getEndDate());
-		if(availableCars.isEmpty())
-			throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
-	                + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
-		Car car = availableCars.get((int)(Math.random()*availableCars.size()));
-		
-		Reservation res = new Reservation(quote, car.getId());
-		car.addReservation(res);
-		return res;
+		if(requestLog.isLoggable())
+			requestLog.log("<{0}> Reservation of {1}", name, quote);
+		while(true) {
+			Car car = getRandomAvailableCar(quote.getCarType(), quote.getStartDay(), quote.getEndDay());
+			if(car == null)
+				throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
+		                + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
+			
+			Reservation res = new Reservation(quote, car.getId());
+			if(car.tryAddReservation(res)) {
+				occupancies.get(quote.getCarType()).refresh(car, res.getStartDay(), res.getEndDay());
+				quoteCache.invalidate(res.getCarType(), res.getStartDay(), res.getEndDay());
+				countReservation(res.getCarRenter(), 1);
+				reservationHistogram.add(res.getCarType(), res.getStartDay(), 1);
+				return res;
+			}
+			// another client booked this car in the meantime, pick another one
+		}
 	}
 	
 	public List<Reservation> getReservationsByRenter(String clientName) {
 		List<Reservation> reservations = new ArrayList<>();
 		
+		// compare symbol ids, only the matching reservations are materialized
+		int renterId = SymbolTable.NAMES.find(clientName);
 		for(Car car: cars) {
-			for(Reservation reservation: car.getReservations()) {
-				if (reservation.getCarRenter().equals(clientName)) {
-					reservations.add(reservation);
+			ReservationIndex index = car.getReservationIndex();
+			for(int i = 0; i < index.size(); i++) {
+				if (index.renterIdAt(i) == renterId) {
+					reservations.add(index.get(i));
 				}
 			}
 		}
@@ -177,58 +309,138 @@ public class CarRentalCompany implements ICarRentalCompany {
 	public List<Reservation> getAllReservations() {
 		List<Reservation> reservations = new ArrayList<>();
 		
-		for(Car car: cars) {
-			for(Reservation reservation: car.getReservations()) {
-				reservations.add(reservation);
-			}
+		for(String carType: carsByType.keySet()) {
+			reservations.addAll(getReservationsForCarType(carType));
 		}
 		
 		return reservations;
 	}
 
-	public int getNumberOfReservationsForCarType(String carType) {
-		int total = 0;
-		
-		for(Car car: cars) {
-			for(Reservation reservation: car.getReservations()) {
-				if (reservation.getCarType().equals(carType)) {
-					total ++;
-				}
-			}
+	public int getNumberOfReservationsByRenter(String clientName) {
+		return reservationCountByRenter.getOrDefault(clientName, 0);
+	}
+	
+	public Map<String, Integer> getReservationCountsByRenter() {
+		return new HashMap<String, Integer>(reservationCountByRenter);
+	}
+	
+	@Override
+	public void addRenterStatistics(RenterStatistics statistics) {
+		renterStatisticsLock.writeLock().lock();
+		try {
+			statistics.addAll(reservationCountByRenter);
+			renterStatistics.add(statistics);
+		} finally {
+			renterStatisticsLock.writeLock().unlock();
 		}
-		
-		return total;
 	}
 	
-	public int getNumberOfReservationsForCarType(String carType, int year) {
-		int total = 0;
+	@Override
+	public void removeRenterStatistics(RenterStatistics statistics) {
+		renterStatisticsLock.writeLock().lock();
+		try {
+			if(renterStatistics.remove(statistics))
+				statistics.removeAll(reservationCountByRenter);
+		} finally {
+			renterStatisticsLock.writeLock().unlock();
+		}
+	}
+	
+	private void countReservation(String renter, int delta) {
+		renterStatisticsLock.readLock().lock();
+		try {
+			reservationCountByRenter.compute(renter, (name, count) -> {
+				int newCount = (count == null ? 0 : count) + delta;
+				return newCount == 0 ? null : newCount;
+			});
+			for(RenterStatistics statistics: renterStatistics)
+				statistics.add(renter, delta);
+		} finally {
+			renterStatisticsLock.readLock().unlock();
+		}
+	}
+	
+	public ReservationPage getReservationsByRenter(String clientName, long token, int pageSize) {
+		return getReservationPage(clientName, token, pageSize);
+	}
+	
+	public ReservationPage getAllReservations(long token, int pageSize) {
+		return getReservationPage(null, token, pageSize);
+	}
+	
+	/**
+	 * Walks the cars in a fixed order and collects at most pageSize reservations,
+	 * starting at the position encoded in the token.
+	 * 
+	 * @param renter	only collect the reservations of this renter, or all of them if null
+	 */
+	private ReservationPage getReservationPage(String renter, long token, int pageSize) {
+		if(pageSize <= 0)
+			throw new IllegalArgumentException("Illegal page size " + pageSize);
+		if(token < 0)
+			throw new IllegalArgumentException("Illegal continuation token " + token);
 		
-		for(Car car: cars) {
-			for(Reservation reservation: car.getReservations()) {
-				if (reservation.getCarType().equals(carType) && reservation.getStartDate().getYear() + 1900 == year) {
-					total ++;
-				}
+		List<Reservation> page = new ArrayList<>(Math.min(pageSize, 64));
+		int renterId = SymbolTable.NAMES.find(renter);
+		int fromDay = ReservationPage.fromDay(token);
+		for(int position = ReservationPage.carPosition(token); position < cars.length; position++) {
+			ReservationIndex index = cars[position].getReservationIndex();
+			for(int i = index.firstStartingAtOrAfter(fromDay); i < index.size(); i++) {
+				if(renter != null && index.renterIdAt(i) != renterId)
+					continue;
+				if(page.size() == pageSize)
+					return new ReservationPage(page, ReservationPage.token(position, index.startDayAt(i)));
+				page.add(index.get(i));
 			}
+			fromDay = Integer.MIN_VALUE;
 		}
-		
-		return total;
+		return new ReservationPage(page, ReservationPage.NO_MORE_PAGES);
+	}
+
+	public int getNumberOfReservationsForCarType(String carType) {
+		Car[] fleet = carsByType.get(carType);
+		if(fleet == null)
+			return 0;
+		int count = 0;
+		for(Car car: fleet) {
+			count += car.getReservationIndex().size();
+		}
+		return count;
+	}
+	
+	public int getNumberOfReservationsForCarType(String carType, int year) {
+		return reservationHistogram.getNumberOfReservations(carType, year);
+	}
+	
+	public ReservationHistogram getReservationHistogram() {
+		return reservationHistogram.snapshot();
+	}
+	
+	public SymbolTableStatistics getSymbolTableStatistics() {
+		return SymbolTable.NAMES.statistics();
 	}
 	
 	public List<Reservation> getReservationsForCarType(String carType) {
 		List<Reservation> reservationList = new ArrayList<>();
-		for(Car car: cars) {
-			for(Reservation reservation: car.getReservations()) {
-				if (reservation.getCarType().equals(carType)) {
-					reservationList.add(reservation);
-				}
-			}
+		if(!carsByType.containsKey(carType))
+			return reservationList;
+		
+		for(Car car: carsByType.get(carType)) {
+			reservationList.addAll(car.getReservations());
 		}
 		return reservationList;
 	}
 	
 	public void cancelReservation(Reservation res) {
-		logger.log(Level.INFO, "<{0}> Cancelling reservation {1}", new Object[]{name, res.toString()});
-		getCar(res.getCarId()).removeReservation(res);
+		if(requestLog.isLoggable())
+			requestLog.log("<{0}> Cancelling reservation {1}", name, res);
+		Car car = getCar(res.getCarId());
+		if(car.removeReservation(res)) {
+			occupancies.get(car.getType().getName()).refresh(car, res.getStartDay(), res.getEndDay());
+			quoteCache.invalidate(res.getCarType(), res.getStartDay(), res.getEndDay());
+			countReservation(res.getCarRenter(), -1);
+			reservationHistogram.add(res.getCarType(), res.getStartDay(), -1);
+		}
 	}
 	
 	@Override
@@ -1,15 +1,21 @@
 package rental;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 public class CarType implements Serializable {
     
-    private String name;
-    private int nbOfSeats;
-    private boolean smokingAllowed;
-    private double rentalPricePerDay;
+    // written by writeObject in a compact format
+    private transient String name;
+    // id of the name in the SymbolTable, to compare and hash car types without the names
+    private transient int nameId;
+    private transient int nbOfSeats;
+    private transient boolean smokingAllowed;
+    private transient double rentalPricePerDay;
     //trunk space in liters
-    private float trunkSpace;
+    private transient float trunkSpace;
     
     /***************
 	 * CONSTRUCTOR *
@@ -17,6 +23,7 @@ public class CarType implements Serializable {
     
     CarType(String name, int nbOfSeats, float trunkSpace, double rentalPricePerDay, boolean smokingAllowed) {
         this.name = name;
+        this.nameId = SymbolTable.NAMES.idOf(name);
         this.nbOfSeats = nbOfSeats;
         this.trunkSpace = trunkSpace;
         this.rentalPricePerDay = rentalPricePerDay;
@@ -43,6 +50,29 @@ public class CarType implements Serializable {
     	return trunkSpace;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        CompactSerialization.writeName(out, name);
+        out.writeInt(nbOfSeats);
+        out.writeBoolean(smokingAllowed);
+        out.writeDouble(rentalPricePerDay);
+        out.writeFloat(trunkSpace);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        name = CompactSerialization.readName(in);
+        nameId = SymbolTable.NAMES.idOf(name);
+        nbOfSeats = in.readInt();
+        smokingAllowed = in.readBoolean();
+        rentalPricePerDay = in.readDouble();
+        trunkSpace = in.readFloat();
+    }
+    
     /*************
      * TO STRING *
      *************/
@@ -57,7 +87,7 @@ public class CarType implements Serializable {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		result = prime * result + nameId;
 		return result;
 	}
 
@@ -70,10 +100,7 @@ public class CarType implements Serializable {
 		if (getClass() != obj.getClass())
 			return false;
 		CarType other = (CarType) obj;
-		if (name == null) {
-			if (other.name != null)
-				return false;
-		} else if (!name.equals(other.name))
+		if (nameId != other.nameId)
 			return false;
 		return true;
 	}
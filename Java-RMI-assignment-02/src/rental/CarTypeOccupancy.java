@@ -0,0 +1,185 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Day-granular occupancy of all cars of a single car type.
+ *
+ * Every car of the type gets a slot in a bitmap. For each day on which at least one
+ * car is booked the bitmap of occupied slots is kept, so checking whether any car of
+ * the type is free in a period only has to combine the bitmaps of the days in that
+ * period instead of visiting the reservations of every single car.
+ *
+ * The bitmaps are kept in an array indexed by day, offset by the first day it covers.
+ * The array grows, to at least twice its length, when a car is booked on a day outside
+ * of it. Days without bookings have no bitmap.
+ *
+ * The bitmap of a day is never modified once it is published. Updates are serialized
+ * on this object's monitor and replace the bitmaps of the days involved by updated
+ * copies, so availability checks read them without locking and never wait on an
+ * update.
+ */
+class CarTypeOccupancy implements Serializable {
+
+	// days the array grows by at least, so a first booking does not start with a tiny array
+	private static final int MIN_GROWTH = 366;
+
+	private final int fleetSize;
+	private final Map<Integer, Integer> slotByCarId = new HashMap<>();
+	private volatile DayTable days = new DayTable(0, 0);
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	CarTypeOccupancy(Car[] cars) {
+		this.fleetSize = cars.length;
+		for (Car car : cars) {
+			slotByCarId.put(car.getId(), slotByCarId.size());
+			for (Reservation reservation : car.getReservations())
+				refresh(car, reservation.getStartDay(), reservation.getEndDay());
+		}
+	}
+
+	/*********
+	 * QUERY *
+	 *********/
+
+	/**
+	 * Checks whether at least one car of this type is free during the whole closed
+	 * period [startDay, endDay].
+	 */
+	boolean isAnyCarFree(int startDay, int endDay) {
+		if (fleetSize == 0)
+			return false;
+		DayTable table = days;
+		int from = Math.max(startDay, table.firstDay);
+		int to = Math.min(endDay, table.lastDay());
+		BitSet occupied = null;
+		boolean published = false;
+		for (int day = from; day <= to; day++) {
+			BitSet occupiedOnDay = table.get(day);
+			if (occupiedOnDay == null)
+				continue;
+			if (occupied == null) {
+				// published bitmaps are only read, a copy is made once days are combined
+				occupied = occupiedOnDay;
+				published = true;
+			} else {
+				if (published) {
+					occupied = (BitSet) occupied.clone();
+					published = false;
+				}
+				occupied.or(occupiedOnDay);
+			}
+			if (occupied.nextClearBit(0) >= fleetSize)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the bitmap of the given day marks the given car as booked
+	 */
+	boolean isOccupied(int carId, int day) {
+		BitSet occupiedOnDay = days.get(day);
+		return occupiedOnDay != null && occupiedOnDay.get(slotOf(carId));
+	}
+
+	/**********
+	 * UPDATE *
+	 **********/
+
+	/**
+	 * Brings the bitmaps of the days [startDay, endDay] in line with the current
+	 * reservations of the given car. Called after every change to the reservations of
+	 * the car, with the period of the changed reservation.
+	 *
+	 * The bits are taken from the reservations rather than set or cleared blindly: a
+	 * cancellation and a booking of the same car and days can update the car in one
+	 * order and reach this method in the other. Since every call reads the reservations
+	 * after its own change and the calls are serialized, the last call always leaves
+	 * the bits of the car right.
+	 */
+	synchronized void refresh(Car car, int startDay, int endDay) {
+		int slot = slotOf(car.getId());
+		ReservationIndex reservations = car.getReservationIndex();
+		DayTable table = days;
+		for (int day = startDay; day <= endDay; day++) {
+			boolean booked = reservations.overlaps(day, day);
+			BitSet occupiedOnDay = table.get(day);
+			if (occupiedOnDay == null ? !booked : occupiedOnDay.get(slot) == booked)
+				continue;
+			BitSet updated = occupiedOnDay == null ? new BitSet(fleetSize) : (BitSet) occupiedOnDay.clone();
+			updated.set(slot, booked);
+			if (!table.covers(day)) {
+				table = table.grow(day, endDay);
+				days = table;
+			}
+			table.set(day, updated.isEmpty() ? null : updated);
+		}
+	}
+
+	private int slotOf(int carId) {
+		Integer slot = slotByCarId.get(carId);
+		if (slot == null)
+			throw new IllegalArgumentException("No car with uid " + carId + " of this type");
+		return slot;
+	}
+
+	/**
+	 * The bitmaps of the days [firstDay, firstDay + length). The array itself is only
+	 * replaced when it grows; its elements are written and read as volatiles.
+	 */
+	private static final class DayTable implements Serializable {
+
+		final int firstDay;
+		private final AtomicReferenceArray<BitSet> occupiedByDay;
+
+		DayTable(int firstDay, int length) {
+			this.firstDay = firstDay;
+			this.occupiedByDay = new AtomicReferenceArray<>(length);
+		}
+
+		int lastDay() {
+			return firstDay + occupiedByDay.length() - 1;
+		}
+
+		boolean covers(int day) {
+			return day >= firstDay && day <= lastDay();
+		}
+
+		BitSet get(int day) {
+			return covers(day) ? occupiedByDay.get(day - firstDay) : null;
+		}
+
+		void set(int day, BitSet occupied) {
+			occupiedByDay.set(day - firstDay, occupied);
+		}
+
+		/**
+		 * @return a copy of this table that also covers the days [day, endDay]
+		 */
+		DayTable grow(int day, int endDay) {
+			int length = occupiedByDay.length();
+			int growth = Math.max(length, MIN_GROWTH);
+			int newFirstDay;
+			int newLastDay;
+			if (length == 0) {
+				newFirstDay = day;
+				newLastDay = Math.max(endDay, day + growth - 1);
+			} else {
+				newFirstDay = day < firstDay ? Math.min(day, firstDay - growth) : firstDay;
+				newLastDay = endDay > lastDay() ? Math.max(endDay, lastDay() + growth) : lastDay();
+			}
+			DayTable grown = new DayTable(newFirstDay, newLastDay - newFirstDay + 1);
+			for (int i = 0; i < length; i++)
+				grown.occupiedByDay.set(firstDay - newFirstDay + i, occupiedByDay.get(i));
+			return grown;
+		}
+	}
+}
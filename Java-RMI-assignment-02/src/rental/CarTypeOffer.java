@@ -0,0 +1,39 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * An available car type together with the price a company charges for it in the
+ * requested period.
+ */
+public class CarTypeOffer implements Serializable {
+
+	private CarType carType;
+	private double rentalPrice;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	CarTypeOffer(CarType carType, double rentalPrice) {
+		this.carType = carType;
+		this.rentalPrice = rentalPrice;
+	}
+
+	public CarType getCarType() {
+		return carType;
+	}
+
+	public double getRentalPrice() {
+		return rentalPrice;
+	}
+
+	/*************
+	 * TO STRING *
+	 *************/
+
+	@Override
+	public String toString() {
+		return String.format("%s\tTotal price: %.2f", getCarType(), getRentalPrice());
+	}
+}
@@ -0,0 +1,28 @@
+package rental;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Helpers for the compact wire format of the value objects that are sent over RMI.
+ *
+ * Dates are written as a plain int epoch day (see EpochDays) by the value objects
+ * themselves. Names are interned, so within one stream every distinct
+ * name is written once and all later occurrences are back-references into the
+ * stream's handle table; on the receiving side equal names share one instance.
+ */
+final class CompactSerialization {
+
+	private CompactSerialization() {
+	}
+
+	static void writeName(ObjectOutputStream out, String name) throws IOException {
+		out.writeObject(name == null ? null : name.intern());
+	}
+
+	static String readName(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		String name = (String) in.readObject();
+		return name == null ? null : name.intern();
+	}
+}
@@ -0,0 +1,43 @@
+package rental;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Conversion between java.util.Date and the internal time model.
+ *
+ * Internally a date is a calendar day, stored as an int counting the days since
+ * 1970-01-01. Dates are only converted at the API boundary; availability checks,
+ * prices and statistics all work on these day numbers.
+ *
+ * A date is turned into a day in the time zone of the JVM that converts it, so a
+ * client and a server in different time zones can disagree on the day of the same
+ * Date. Dates of clients are therefore converted on the client: the agency takes
+ * periods as ReservationConstraints and AvailabilityWindows, which the client builds
+ * and which travel as day numbers. Only the Date methods of ICarRentalCompany still
+ * convert on the server, in the server's time zone.
+ */
+final class EpochDays {
+
+	private static final long MILLIS_PER_DAY = 1000L * 60 * 60 * 24;
+	private static final TimeZone ZONE = TimeZone.getDefault();
+
+	private EpochDays() {
+	}
+
+	/**
+	 * @return the calendar day of the given date in the default time zone
+	 */
+	static int of(Date date) {
+		long millis = date.getTime();
+		return (int) Math.floorDiv(millis + ZONE.getOffset(millis), MILLIS_PER_DAY);
+	}
+
+	/**
+	 * @return the start of the given calendar day in the default time zone
+	 */
+	static Date toDate(int epochDay) {
+		return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE.toZoneId()).toInstant());
+	}
+}
@@ -0,0 +1,66 @@
+package rental;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Logs the events of a hot path at a fixed level, of which only one in sampleRate
+ * is kept.
+ *
+ * Callers check isLoggable() before building an event, so a disabled or sampled-out
+ * event costs a level check and a random number and allocates nothing. The
+ * parameters of an event are passed as they are and only formatted by the handler,
+ * which can also read them from the record as structured fields.
+ */
+final class EventLog {
+
+	private final Logger logger;
+	private final Level level;
+	private final int sampleRate;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	/**
+	 * @param sampleRate	keep one in this many events, 1 keeps all of them
+	 */
+	EventLog(Logger logger, Level level, int sampleRate) {
+		if (sampleRate < 1)
+			throw new IllegalArgumentException("Illegal sample rate " + sampleRate);
+		this.logger = logger;
+		this.level = level;
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @return whether the next event should be logged
+	 */
+	boolean isLoggable() {
+		return logger.isLoggable(level)
+				&& (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+	}
+
+	/***********
+	 * LOGGING *
+	 ***********/
+
+	void log(String message, Object param0, Object param1) {
+		log(message, new Object[]{param0, param1});
+	}
+
+	void log(String message, Object param0, Object param1, Object param2) {
+		log(message, new Object[]{param0, param1, param2});
+	}
+
+	private void log(String message, Object[] params) {
+		LogRecord record = new LogRecord(level, message);
+		record.setLoggerName(logger.getName());
+		// skips the stack walk that would otherwise find this class as the source
+		record.setSourceClassName(logger.getName());
+		record.setParameters(params);
+		logger.log(record);
+	}
+}
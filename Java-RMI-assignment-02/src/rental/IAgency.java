@@ -16,14 +16,22 @@ public interface IAgency extends Remote{
 	
 	void endManagerSession(ManagerSession session) throws RemoteException;
 	
+	// periods are passed as windows and constraints built by the client, which turn its dates into calendar days in its own time zone
+	Set<CarType> checkForAvailableCarTypes(ReservationSession session, AvailabilityWindow window) throws RemoteException;
+	
+	// the Date overloads are kept for existing clients; their dates are turned into days in the time zone of the server
 	Set<CarType> checkForAvailableCarTypes(ReservationSession session, Date start, Date end) throws RemoteException;
 	
+	void addQuoteToSession(ReservationSession session, String name, ReservationConstraints constraints) throws RemoteException, ReservationException;
+	
 	void addQuoteToSession(ReservationSession session, String name, Date start, Date end, String carType, String region) throws RemoteException, ReservationException;
 	
 	List<Reservation> confirmQuotes(ReservationSession session, String name) throws RemoteException, ReservationException ;
 	
 	List<Quote> getCurrentQuotes(ReservationSession session) throws RemoteException;
 	
+	CarType getCheapestCarType(ReservationSession session, AvailabilityWindow window) throws RemoteException;
+	
 	CarType getCheapestCarType(ReservationSession session, Date start, Date end, String region) throws RemoteException;
 	
 	int getNumberOfReservationsByRenter(ManagerSession managerSession, String clientName) throws RemoteException;
@@ -34,6 +42,9 @@ public interface IAgency extends Remote{
 	
 	CarType getMostPopularCarType(ManagerSession managerSession, String carRentalCompany, int year) throws RemoteException;
 	
+	// usage of the table in which the server keeps the names of renters, companies and car types
+	SymbolTableStatistics getSymbolTableStatistics(ManagerSession managerSession) throws RemoteException;
+	
 	void registerCRC(ManagerSession managerSession, String crcName) throws RemoteException;
 	
 	void unregisterCRC(ManagerSession managerSession, String crcName) throws RemoteException;
@@ -5,6 +5,7 @@ import java.rmi.RemoteException;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -45,6 +46,17 @@ public interface ICarRentalCompany {
 	 */
 	boolean isAvailable(String carTypeName, Date start, Date end);
 	
+	/**
+	 * Batched availability query: for every given window, look up the car types
+	 * that are available and their price for that period. This answers a whole
+	 * search in a single (remote) call.
+	 * 
+	 * @param windows	the periods (and regions) to check
+	 * @return for each window, in the same order, the available car types with their price;
+	 * 		an empty list if the company does not operate in the window's region
+	 */
+	List<List<CarTypeOffer>> getAvailableCarTypeOffers(List<AvailabilityWindow> windows);
+	
 	/**
 	 * 
 	 * Retrieve a quote for a given car type (tentative reservation).
@@ -85,6 +97,48 @@ public interface ICarRentalCompany {
 	 */
 	List<Reservation> getReservationsByRenter(String clientName);
 	
+	/**
+	 * Get one page of the reservations made by the given client.
+	 * 
+	 * @param clientName	name of the client
+	 * @param token			{@link ReservationPage#FIRST_PAGE} or the next token of the previous page
+	 * @param pageSize		maximum number of reservations in the page
+	 * @return the requested page
+	 */
+	ReservationPage getReservationsByRenter(String clientName, long token, int pageSize);
+	
+	/**
+	 * Get the number of reservations made by the given client. The count is kept up to
+	 * date on every confirmation and cancellation.
+	 * 
+	 * @param clientName name of the client
+	 * @return the number of reservations of the given client
+	 */
+	int getNumberOfReservationsByRenter(String clientName);
+	
+	/**
+	 * Get the number of reservations of every client that has at least one.
+	 * 
+	 * @return a snapshot of the number of reservations per client name
+	 */
+	Map<String, Integer> getReservationCountsByRenter();
+	
+	/**
+	 * Keep the given statistics up to date with the number of reservations per client:
+	 * the current counts are added right away, and every later confirmation and
+	 * cancellation as it happens, including cancellations made directly on the company.
+	 * 
+	 * @param statistics the statistics to update
+	 */
+	void addRenterStatistics(RenterStatistics statistics);
+	
+	/**
+	 * Stop updating the given statistics and subtract the counts of this company again.
+	 * 
+	 * @param statistics statistics that were passed to addRenterStatistics
+	 */
+	void removeRenterStatistics(RenterStatistics statistics);
+	
 	/**
 	 * Get the number of reservations for a particular car type.
 	 * 
@@ -97,6 +151,29 @@ public interface ICarRentalCompany {
 	
 	int getNumberOfReservationsForCarType(String carType, int year);
 	
+	/**
+	 * Get the number of reservations per car type, year and month in a single call.
+	 * 
+	 * @return a snapshot of the reservation histogram of this company
+	 */
+	ReservationHistogram getReservationHistogram();
+	
+	/**
+	 * Get the usage of the table in which this server keeps the names of renters,
+	 * companies and car types. The table is shared by all companies in the same JVM.
+	 * 
+	 * @return a snapshot of the symbol table statistics
+	 */
+	SymbolTableStatistics getSymbolTableStatistics();
+	
+	/**
+	 * Get the hit ratio and size of the cache in which this company keeps the outcome
+	 * of recent quote requests.
+	 * 
+	 * @return a snapshot of the quote cache statistics
+	 */
+	QuoteCacheStatistics getQuoteCacheStatistics();
+	
 	String getName();
 	
 	List<String> getRegions();
@@ -105,5 +182,14 @@ public interface ICarRentalCompany {
 	
 	public List<Reservation> getAllReservations();
 	
+	/**
+	 * Get one page of all reservations of this company.
+	 * 
+	 * @param token		{@link ReservationPage#FIRST_PAGE} or the next token of the previous page
+	 * @param pageSize	maximum number of reservations in the page
+	 * @return the requested page
+	 */
+	public ReservationPage getAllReservations(long token, int pageSize);
+	
 	public List<Reservation> getReservationsForCarType(String carType);
 }
@@ -1,44 +1,72 @@
 package rental;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Date;
 
 public class Quote implements Serializable  {
 
-    private Date startDate;
-    private Date endDate;
-    private String carRenter;
-    private String rentalCompany;
-    private String carType;
-    private double rentalPrice;
+    // written by writeObject in a compact format
+    private transient int startDay;
+    private transient int endDay;
+    // names are kept as their id in the SymbolTable
+    private transient int carRenterId;
+    private transient int rentalCompanyId;
+    private transient int carTypeId;
+    private transient double rentalPrice;
     
     /***************
 	 * CONSTRUCTOR *
 	 ***************/
 
-    Quote(String carRenter, Date start, Date end, String rentalCompany, String carType, double rentalPrice) {
-        this.carRenter = carRenter;
-        this.startDate = start;
-        this.endDate = end;
-        this.rentalCompany = rentalCompany;
-        this.carType = carType;
+    Quote(String carRenter, int startDay, int endDay, String rentalCompany, String carType, double rentalPrice) {
+        this(SymbolTable.NAMES.idOf(carRenter), startDay, endDay, SymbolTable.NAMES.idOf(rentalCompany),
+                SymbolTable.NAMES.idOf(carType), rentalPrice);
+    }
+
+    Quote(int carRenterId, int startDay, int endDay, int rentalCompanyId, int carTypeId, double rentalPrice) {
+        this.carRenterId = carRenterId;
+        this.startDay = startDay;
+        this.endDay = endDay;
+        this.rentalCompanyId = rentalCompanyId;
+        this.carTypeId = carTypeId;
         this.rentalPrice = rentalPrice;
     }
 
+    // a quote is for whole calendar days: its dates are the start of the first and last
+    // day in the default time zone of the receiving JVM, not the instants it was asked for
     public Date getStartDate() {
-        return startDate;
+        return EpochDays.toDate(startDay);
     }
 
     public Date getEndDate() {
-        return endDate;
+        return EpochDays.toDate(endDay);
+    }
+
+    int getStartDay() {
+        return startDay;
+    }
+
+    int getEndDay() {
+        return endDay;
     }
 
     public String getCarRenter() {
-        return carRenter;
+        return SymbolTable.NAMES.nameOf(carRenterId);
+    }
+
+    int getCarRenterId() {
+        return carRenterId;
     }
 
     public String getRentalCompany() {
-        return rentalCompany;
+        return SymbolTable.NAMES.nameOf(rentalCompanyId);
+    }
+
+    int getRentalCompanyId() {
+        return rentalCompanyId;
     }
 
     public double getRentalPrice() {
@@ -46,9 +74,37 @@ public class Quote implements Serializable  {
     }
     
     public String getCarType() {
-		return carType;
+		return SymbolTable.NAMES.nameOf(carTypeId);
 	}
     
+    int getCarTypeId() {
+    	return carTypeId;
+    }
+    
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(startDay);
+        out.writeInt(endDay);
+        CompactSerialization.writeName(out, getCarRenter());
+        CompactSerialization.writeName(out, getRentalCompany());
+        CompactSerialization.writeName(out, getCarType());
+        out.writeDouble(rentalPrice);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        startDay = in.readInt();
+        endDay = in.readInt();
+        carRenterId = SymbolTable.NAMES.idOf(CompactSerialization.readName(in));
+        rentalCompanyId = SymbolTable.NAMES.idOf(CompactSerialization.readName(in));
+        carTypeId = SymbolTable.NAMES.idOf(CompactSerialization.readName(in));
+        rentalPrice = in.readDouble();
+    }
+    
     /*************
      * TO STRING *
      *************/
@@ -63,14 +119,14 @@ public class Quote implements Serializable  {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((carRenter == null) ? 0 : carRenter.hashCode());
-		result = prime * result + ((carType == null) ? 0 : carType.hashCode());
-		result = prime * result + ((endDate == null) ? 0 : endDate.hashCode());
-		result = prime * result + ((rentalCompany == null) ? 0 : rentalCompany.hashCode());
+		result = prime * result + carRenterId;
+		result = prime * result + carTypeId;
+		result = prime * result + endDay;
+		result = prime * result + rentalCompanyId;
 		long temp;
 		temp = Double.doubleToLongBits(rentalPrice);
 		result = prime * result + (int) (temp ^ (temp >>> 32));
-		result = prime * result + ((startDate == null) ? 0 : startDate.hashCode());
+		result = prime * result + startDay;
 		return result;
 	}
 
@@ -83,32 +139,17 @@ public class Quote implements Serializable  {
 		if (getClass() != obj.getClass())
 			return false;
 		Quote other = (Quote) obj;
-		if (carRenter == null) {
-			if (other.carRenter != null)
-				return false;
-		} else if (!carRenter.equals(other.carRenter))
+		if (carRenterId != other.carRenterId)
 			return false;
-		if (carType == null) {
-			if (other.carType != null)
-				return false;
-		} else if (!carType.equals(other.carType))
+		if (carTypeId != other.carTypeId)
 			return false;
-		if (endDate == null) {
-			if (other.endDate != null)
-				return false;
-		} else if (!endDate.equals(other.endDate))
+		if (endDay != other.endDay)
 			return false;
-		if (rentalCompany == null) {
-			if (other.rentalCompany != null)
-				return false;
-		} else if (!rentalCompany.equals(other.rentalCompany))
+		if (rentalCompanyId != other.rentalCompanyId)
 			return false;
 		if (Double.doubleToLongBits(rentalPrice) != Double.doubleToLongBits(other.rentalPrice))
 			return false;
-		if (startDate == null) {
-			if (other.startDate != null)
-				return false;
-		} else if (!startDate.equals(other.startDate))
+		if (startDay != other.startDay)
 			return false;
 		return true;
 	}
@@ -0,0 +1,169 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the outcome of createQuote per set of constraints: the price
+ * if a car is available, or UNAVAILABLE if not. The outcome does not depend on the
+ * client, so every client that sends the same constraints shares the entry.
+ *
+ * Every booking or cancellation invalidates the entries of its car type whose period
+ * overlaps the booked period. A version per car type is bumped at the same time, so
+ * an outcome that was computed while such an update ran is not cached.
+ *
+ * The cache is striped per car type: every car type of the company has its own LRU
+ * segment with an equal share of the capacity, guarded by its own monitor, and all
+ * other car types share one segment. Quotes and bookings of different car types
+ * therefore never wait for each other, and an invalidation only scans the entries of
+ * its own car type.
+ */
+class QuoteCache implements Serializable {
+
+	static final double UNAVAILABLE = Double.NaN;
+
+	private final int capacity;
+	// only read after construction
+	private final Map<String, Segment> segmentByCarType = new HashMap<>();
+	private final Segment otherCarTypes;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	/**
+	 * @param capacity	maximum number of cached outcomes, 0 disables the cache
+	 * @param carTypes	names of the car types of the company
+	 */
+	QuoteCache(int capacity, Collection<String> carTypes) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Illegal quote cache capacity " + capacity);
+		this.capacity = capacity;
+		int segmentCapacity = capacity == 0 ? 0 : Math.max(1, capacity / (carTypes.size() + 1));
+		for (String carType : carTypes)
+			segmentByCarType.put(carType, new Segment(segmentCapacity));
+		this.otherCarTypes = new Segment(segmentCapacity);
+	}
+
+	/*********
+	 * QUERY *
+	 *********/
+
+	/**
+	 * @return the cached price, UNAVAILABLE, or null if the outcome is not cached
+	 */
+	Double get(ReservationConstraints constraints) {
+		return segmentOf(constraints.getCarType()).get(constraints);
+	}
+
+	/**
+	 * @return the version to pass to put() for an outcome that is computed from now on
+	 */
+	long version(String carType) {
+		return segmentOf(carType).version;
+	}
+
+	QuoteCacheStatistics statistics() {
+		int size = 0;
+		long hits = 0, misses = 0, evictions = 0, invalidations = 0;
+		for (Segment segment : segments()) {
+			synchronized (segment) {
+				size += segment.entries.size();
+				hits += segment.hits;
+				misses += segment.misses;
+				evictions += segment.evictions;
+				invalidations += segment.invalidations;
+			}
+		}
+		return new QuoteCacheStatistics(size, capacity, hits, misses, evictions, invalidations);
+	}
+
+	/**********
+	 * UPDATE *
+	 **********/
+
+	/**
+	 * Caches an outcome, unless the car type was booked or cancelled since the given
+	 * version was read.
+	 */
+	void put(ReservationConstraints constraints, double price, long version) {
+		segmentOf(constraints.getCarType()).put(constraints, price, version);
+	}
+
+	/**
+	 * Drops the outcomes for the given car type whose period overlaps the closed
+	 * period [startDay, endDay].
+	 */
+	void invalidate(String carType, int startDay, int endDay) {
+		segmentOf(carType).invalidate(startDay, endDay);
+	}
+
+	/***********
+	 * HELPERS *
+	 ***********/
+
+	private Segment segmentOf(String carType) {
+		Segment segment = segmentByCarType.get(carType);
+		return segment != null ? segment : otherCarTypes;
+	}
+
+	private List<Segment> segments() {
+		List<Segment> segments = new ArrayList<>(segmentByCarType.values());
+		segments.add(otherCarTypes);
+		return segments;
+	}
+
+	/**
+	 * LRU cache of the outcomes of one car type.
+	 */
+	private static class Segment implements Serializable {
+
+		private final int capacity;
+		private final Map<ReservationConstraints, Double> entries;
+		// bumped under the monitor, read without it
+		private volatile long version;
+		private long hits;
+		private long misses;
+		private long evictions;
+		private long invalidations;
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			this.entries = new LinkedHashMap<ReservationConstraints, Double>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<ReservationConstraints, Double> eldest) {
+					if (size() <= Segment.this.capacity)
+						return false;
+					evictions++;
+					return true;
+				}
+			};
+		}
+
+		synchronized Double get(ReservationConstraints constraints) {
+			Double price = entries.get(constraints);
+			if (price != null)
+				hits++;
+			else
+				misses++;
+			return price;
+		}
+
+		synchronized void put(ReservationConstraints constraints, double price, long version) {
+			if (capacity > 0 && version == this.version)
+				entries.put(constraints, price);
+		}
+
+		synchronized void invalidate(int startDay, int endDay) {
+			version++;
+			int before = entries.size();
+			entries.keySet().removeIf(constraints -> constraints.getStartDay() <= endDay && constraints.getEndDay() >= startDay);
+			invalidations += before - entries.size();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the usage of a company's quote cache.
+ */
+public class QuoteCacheStatistics implements Serializable {
+
+	private int size;
+	private int capacity;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	QuoteCacheStatistics(int size, int capacity, long hits, long misses, long evictions, long invalidations) {
+		this.size = size;
+		this.capacity = capacity;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries dropped because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of entries dropped because of a booking or cancellation
+	 */
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public double getHitRatio() {
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/*************
+	 * TO STRING *
+	 *************/
+
+	@Override
+	public String toString() {
+		return String.format("Quote cache [%d/%d entries, %d hits, %d misses, hit ratio %.3f, %d evictions, %d invalidations]",
+				getSize(), getCapacity(), getHits(), getMisses(), getHitRatio(), getEvictions(), getInvalidations());
+	}
+}
@@ -0,0 +1,24 @@
+package rental;
+
+/**
+ * Determines how the agency asks the registered companies for a quote.
+ */
+public enum QuoteSelectionPolicy {
+
+	/**
+	 * Ask the companies one after the other and keep the first quote.
+	 */
+	SEQUENTIAL,
+
+	/**
+	 * Ask all companies concurrently and keep the first quote that arrives,
+	 * the remaining requests are cancelled.
+	 */
+	FIRST,
+
+	/**
+	 * Ask all companies concurrently and keep the cheapest quote among the ones
+	 * that arrive before the deadline.
+	 */
+	CHEAPEST
+}
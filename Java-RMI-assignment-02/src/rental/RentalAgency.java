@@ -3,29 +3,72 @@ package rental;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import rental.RentalAgencyServer.CrcData;
 
+/**
+ * The agency is shared by all RMI client threads. Its own bookkeeping lives in
+ * concurrent collections and every company guards its cars itself, so requests of
+ * different clients (and read-only manager queries) are not serialized.
+ */
 public class RentalAgency implements IAgency {
 	
 	private Map<String, ICarRentalCompany> carRentalCompanies;
 	private Map<ReservationSession, List<Quote>> quotesBySession;
 	private Set<ManagerSession> managerSessions;
+	private RenterStatistics renterStatistics = new RenterStatistics();
 	
-	RentalAgency(List<ICarRentalCompany> carRentalCompanies) {		
+	static final long DEFAULT_QUOTE_DEADLINE_MILLIS = 2000;
+	private static final int QUOTE_THREADS = 8;
+	
+	private final QuoteSelectionPolicy quotePolicy;
+	private final long quoteDeadlineMillis;
+	private final ExecutorService quoteExecutor;
+	
+	RentalAgency(List<ICarRentalCompany> carRentalCompanies) {
+		this(carRentalCompanies, QuoteSelectionPolicy.SEQUENTIAL, DEFAULT_QUOTE_DEADLINE_MILLIS);
+	}
+	
+	/**
+	 * @param quotePolicy			how the companies are asked for a quote
+	 * @param quoteDeadlineMillis	how long a concurrent quote request waits for the companies
+	 */
+	RentalAgency(List<ICarRentalCompany> carRentalCompanies, QuoteSelectionPolicy quotePolicy, long quoteDeadlineMillis) {
 		// Auto CRC registration
-		this.carRentalCompanies = new HashMap<>();
+		this.carRentalCompanies = new ConcurrentHashMap<>();
 		for(ICarRentalCompany company: carRentalCompanies) {
 			this.carRentalCompanies.put(company.getName(), company);
+			company.addRenterStatistics(renterStatistics);
+		}
+		this.quotesBySession = new ConcurrentHashMap<>();
+		this.managerSessions = ConcurrentHashMap.newKeySet();
+		this.quotePolicy = quotePolicy;
+		this.quoteDeadlineMillis = quoteDeadlineMillis;
+		if(quotePolicy == QuoteSelectionPolicy.SEQUENTIAL) {
+			this.quoteExecutor = null;
+		} else {
+			this.quoteExecutor = Executors.newFixedThreadPool(QUOTE_THREADS, runnable -> {
+				Thread thread = new Thread(runnable, "quote-request");
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
-		this.quotesBySession = new HashMap<>();
-		this.managerSessions = new HashSet<>();
 	}
 
 
@@ -40,46 +83,146 @@ public class RentalAgency implements IAgency {
 	}
 	
 	@Override
-	synchronized public ReservationSession getNewReservationSession(String clientName) throws RemoteException {
+	public ReservationSession getNewReservationSession(String clientName) throws RemoteException {
 		ReservationSession newReservationSession = new ReservationSession(clientName);
-		quotesBySession.put(newReservationSession, new ArrayList<>());
+		quotesBySession.put(newReservationSession, new CopyOnWriteArrayList<>());
 		return newReservationSession;
 	}
 
 	@Override
-	synchronized public ManagerSession getNewManagerSession(String clientName) throws RemoteException {
+	public ManagerSession getNewManagerSession(String clientName) throws RemoteException {
 		ManagerSession newManagerSession = new ManagerSession(clientName);
 		managerSessions.add(newManagerSession);
 		return newManagerSession;
 	}
 
 	@Override
-	synchronized public Set<CarType> checkForAvailableCarTypes(ReservationSession session, Date start, Date end) throws RemoteException {
+	public Set<CarType> checkForAvailableCarTypes(ReservationSession session, AvailabilityWindow window) throws RemoteException {
+		List<AvailabilityWindow> windows = Collections.singletonList(window);
 		Set<CarType> availableCarTypes = new HashSet<CarType>();
 		for(ICarRentalCompany company: carRentalCompanies.values()) {
-			availableCarTypes.addAll(company.getAvailableCarTypes(start,  end));
+			for(CarTypeOffer offer: company.getAvailableCarTypeOffers(windows).get(0)) {
+				availableCarTypes.add(offer.getCarType());
+			}
 		}
 		return availableCarTypes;
 	}
+	
+	@Override
+	public Set<CarType> checkForAvailableCarTypes(ReservationSession session, Date start, Date end) throws RemoteException {
+		return checkForAvailableCarTypes(session, new AvailabilityWindow(start, end, null));
+	}
 
 	@Override
-	synchronized public void addQuoteToSession(ReservationSession session, String name, Date start, Date end, String carType,
+	public void addQuoteToSession(ReservationSession session, String name, ReservationConstraints contraints)
+			throws RemoteException, ReservationException {
+		Quote newQuote;
+		switch(quotePolicy) {
+		case FIRST:
+			newQuote = createFirstQuote(contraints, session.getClientName());
+			break;
+		case CHEAPEST:
+			newQuote = createCheapestQuote(contraints, session.getClientName());
+			break;
+		default:
+			newQuote = createQuote(contraints, session.getClientName());
+		}
+		quotesBySession.get(session).add(newQuote);
+	}
+	
+	@Override
+	public void addQuoteToSession(ReservationSession session, String name, Date start, Date end, String carType,
 			String region) throws RemoteException, ReservationException {
-		ReservationConstraints contraints = new ReservationConstraints(start, end, carType, region);
+		addQuoteToSession(session, name, new ReservationConstraints(start, end, carType, region));
+	}
+	
+	private Quote createQuote(ReservationConstraints constraints, String client) throws ReservationException {
 		for(ICarRentalCompany company: carRentalCompanies.values()) {
 			try {
-				Quote newQuote = company.createQuote(contraints, session.getClientName());
-				quotesBySession.get(session).add(newQuote);
-				return;
+				return company.createQuote(constraints, client);
 			} catch (ReservationException e) {
 				
 			}
 		}
 		throw new ReservationException("No available car");
 	}
+	
+	private List<Callable<Quote>> quoteRequests(ReservationConstraints constraints, String client) {
+		List<Callable<Quote>> requests = new ArrayList<>();
+		for(ICarRentalCompany company: carRentalCompanies.values()) {
+			requests.add(() -> company.createQuote(constraints, client));
+		}
+		return requests;
+	}
+	
+	private Quote createFirstQuote(ReservationConstraints constraints, String client) throws ReservationException {
+		CompletionService<Quote> completionService = new ExecutorCompletionService<>(quoteExecutor);
+		List<Future<Quote>> pending = new ArrayList<>();
+		for(Callable<Quote> request: quoteRequests(constraints, client)) {
+			pending.add(completionService.submit(request));
+		}
+		
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quoteDeadlineMillis);
+		try {
+			for(int i = 0; i < pending.size(); i++) {
+				Future<Quote> done = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				if(done == null)
+					break;
+				try {
+					return done.get();
+				} catch (ExecutionException e) {
+					// this company cannot make a quote, wait for the others
+					rethrowUnchecked(e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			for(Future<Quote> request: pending) {
+				request.cancel(true);
+			}
+		}
+		throw new ReservationException("No available car");
+	}
+	
+	private Quote createCheapestQuote(ReservationConstraints constraints, String client) throws ReservationException {
+		Quote cheapest = null;
+		try {
+			// requests that did not finish before the deadline are cancelled
+			for(Future<Quote> result: quoteExecutor.invokeAll(quoteRequests(constraints, client), quoteDeadlineMillis, TimeUnit.MILLISECONDS)) {
+				if(result.isCancelled())
+					continue;
+				try {
+					Quote quote = result.get();
+					if(cheapest == null || quote.getRentalPrice() < cheapest.getRentalPrice())
+						cheapest = quote;
+				} catch (ExecutionException e) {
+					// this company cannot make a quote
+					rethrowUnchecked(e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(cheapest == null)
+			throw new ReservationException("No available car");
+		return cheapest;
+	}
+	
+	/**
+	 * Only a ReservationException means a company cannot make the quote. Anything else, like
+	 * an IllegalArgumentException for an invalid period, is passed on to the caller as if
+	 * the company had been asked directly, like createQuote does.
+	 */
+	private static void rethrowUnchecked(ExecutionException e) {
+		if(e.getCause() instanceof RuntimeException)
+			throw (RuntimeException) e.getCause();
+		if(e.getCause() instanceof Error)
+			throw (Error) e.getCause();
+	}
 
 	@Override
-	synchronized public List<Reservation> confirmQuotes(ReservationSession session, String name) throws RemoteException, ReservationException {
+	public List<Reservation> confirmQuotes(ReservationSession session, String name) throws RemoteException, ReservationException {
 		List<Reservation> reservations = new ArrayList<>();
 		try {
 			for(Quote quote: quotesBySession.get(session)) {
@@ -97,24 +240,21 @@ public class RentalAgency implements IAgency {
 	}
 
 	@Override
-	synchronized public List<Quote> getCurrentQuotes(ReservationSession session) throws RemoteException {
+	public List<Quote> getCurrentQuotes(ReservationSession session) throws RemoteException {
 		return quotesBySession.get(session);
 	}
 
 	@Override
-	synchronized public CarType getCheapestCarType(ReservationSession session, Date start, Date end, String region)  throws RemoteException {
+	public CarType getCheapestCarType(ReservationSession session, AvailabilityWindow window)  throws RemoteException {
 		CarType cheapestCarType = null;
 		double cheapestPrice = -1;
 		
+		List<AvailabilityWindow> windows = Collections.singletonList(window);
 		for(ICarRentalCompany company: carRentalCompanies.values()) {
-			if(company.getRegions().contains(region)) {
-				Set<CarType> available = company.getAvailableCarTypes(start, end);
-				for(CarType carType: available) {
-					double price = company.calculateRentalPrice(carType.getRentalPricePerDay(), start, end);
-					if (cheapestPrice == -1 || cheapestPrice > price) {
-						cheapestCarType = carType;
-						cheapestPrice = price;
-					}
+			for(CarTypeOffer offer: company.getAvailableCarTypeOffers(windows).get(0)) {
+				if (cheapestPrice == -1 || cheapestPrice > offer.getRentalPrice()) {
+					cheapestCarType = offer.getCarType();
+					cheapestPrice = offer.getRentalPrice();
 				}
 			}
 		}
@@ -123,60 +263,37 @@ public class RentalAgency implements IAgency {
 	}
 	
 	@Override
-	synchronized public int getNumberOfReservationsByRenter(ManagerSession managerSession, String clientName)
+	public CarType getCheapestCarType(ReservationSession session, Date start, Date end, String region) throws RemoteException {
+		return getCheapestCarType(session, new AvailabilityWindow(start, end, region));
+	}
+	
+	@Override
+	public int getNumberOfReservationsByRenter(ManagerSession managerSession, String clientName)
 			throws RemoteException {
-		int numberReservations = 0;
-		for(ICarRentalCompany company: carRentalCompanies.values()) {
-			numberReservations += company.getReservationsByRenter(clientName).size();
-		}
-		return numberReservations;
+		return renterStatistics.getNumberOfReservations(clientName);
 	}
 
 	@Override
-	synchronized public int getNumberOfReservationsForCarType(ManagerSession managerSession, String carRentalName, String carType)
+	public int getNumberOfReservationsForCarType(ManagerSession managerSession, String carRentalName, String carType)
 			throws RemoteException {
 		ICarRentalCompany company = carRentalCompanies.get(carRentalName);
 		return company.getNumberOfReservationsForCarType(carType);
 	}
 
 	@Override
-	synchronized public Set<String> getBestCustomers(ManagerSession managerSession) throws RemoteException {
-		Map<String, Integer> customers = new HashMap<>();
-		
-		for(ICarRentalCompany company: carRentalCompanies.values()) {
-			for(Reservation reservation: company.getAllReservations()) {
-				if (!customers.containsKey(reservation.getCarRenter())) {
-					customers.put(reservation.getCarRenter(), 1);
-				} else {
-					int actualNr = customers.get(reservation.getCarRenter());
-					customers.put(reservation.getCarRenter(), actualNr + 1);
-				}
-			}
-		}
-		
-		int maximum = -1;
-		Set<String> bestCustomers = new HashSet<>();
-		for(String customer: customers.keySet()) {
-			int nrOfRevs = customers.get(customer);
-			if (nrOfRevs > maximum) {
-				maximum = nrOfRevs;
-				bestCustomers = new HashSet<>();
-				bestCustomers.add(customer);
-			} else if(nrOfRevs == maximum) {
-				bestCustomers.add(customer);
-			}
-		}
-		return bestCustomers;
+	public Set<String> getBestCustomers(ManagerSession managerSession) throws RemoteException {
+		return renterStatistics.getBestRenters();
 	}
 
 	@Override
-	synchronized public CarType getMostPopularCarType(ManagerSession managerSession, String carRentalCompany, int year)
+	public CarType getMostPopularCarType(ManagerSession managerSession, String carRentalCompany, int year)
 			throws RemoteException {
 		ICarRentalCompany company = carRentalCompanies.get(carRentalCompany);
+		ReservationHistogram histogram = company.getReservationHistogram();
 		int maximum = -1;
 		CarType bestCarType = null;
 		for(CarType carType: company.getAllCarTypes()) {
-			int counter =  company.getNumberOfReservationsForCarType(carType.getName(), year);
+			int counter = histogram.getNumberOfReservations(carType.getName(), year);
 			if(counter > maximum) {
 				maximum = counter;
 				bestCarType = carType;
@@ -184,6 +301,12 @@ public class RentalAgency implements IAgency {
 		}
 		return bestCarType;
 	}
+	
+	@Override
+	public SymbolTableStatistics getSymbolTableStatistics(ManagerSession managerSession) throws RemoteException {
+		// the table is shared by all companies of this server, including those not registered
+		return SymbolTable.NAMES.statistics();
+	}
 
 
 	@Override
@@ -191,7 +314,10 @@ public class RentalAgency implements IAgency {
 		try {
 			CrcData dockxData = RentalAgencyServer.loadData(crcName);
 			ICarRentalCompany company = new CarRentalCompany(dockxData.name, dockxData.regions, dockxData.cars);
-			carRentalCompanies.put(crcName, company);
+			ICarRentalCompany replaced = carRentalCompanies.put(crcName, company);
+			if(replaced != null)
+				replaced.removeRenterStatistics(renterStatistics);
+			company.addRenterStatistics(renterStatistics);
 		} catch(Exception e) {
 			System.out.println("Error occurred: " + e.getMessage());
 		}
@@ -200,7 +326,9 @@ public class RentalAgency implements IAgency {
 
 	@Override
 	public void unregisterCRC(ManagerSession managerSession, String crcName) throws RemoteException {
-		carRentalCompanies.remove(crcName);
+		ICarRentalCompany company = carRentalCompanies.remove(crcName);
+		if(company != null)
+			company.removeRenterStatistics(renterStatistics);
 	}
 
 
@@ -32,13 +32,21 @@ public class RentalAgencyServer {
 		// indicates whether the application is run on the remote setup or not.
 		int localOrRemote = (args.length == 1 && args[0].equals("REMOTE")) ? REMOTE : LOCAL;
 
+		// The quote cache can be sized (or disabled with 0) with -Drental.quoteCacheSize=N
+		int quoteCacheSize = Integer.getInteger("rental.quoteCacheSize", CarRentalCompany.DEFAULT_QUOTE_CACHE_SIZE);
+		
 		CrcData hertzData = loadData("hertz.csv");
-		ICarRentalCompany hertzCompany = new CarRentalCompany(hertzData.name, hertzData.regions, hertzData.cars);
+		ICarRentalCompany hertzCompany = new CarRentalCompany(hertzData.name, hertzData.regions, hertzData.cars, quoteCacheSize);
 		
 		CrcData dockxData = loadData("dockx.csv");
-		ICarRentalCompany dockxCompany = new CarRentalCompany(dockxData.name, dockxData.regions, dockxData.cars);
+		ICarRentalCompany dockxCompany = new CarRentalCompany(dockxData.name, dockxData.regions, dockxData.cars, quoteCacheSize);
 		
-		IAgency agency = new RentalAgency(Arrays.asList(new ICarRentalCompany[]{hertzCompany, dockxCompany}));
+		// The quote policy can be chosen with -Drental.quotePolicy=SEQUENTIAL|FIRST|CHEAPEST
+		QuoteSelectionPolicy quotePolicy = QuoteSelectionPolicy.valueOf(
+				System.getProperty("rental.quotePolicy", QuoteSelectionPolicy.SEQUENTIAL.name()));
+		long quoteDeadlineMillis = Long.getLong("rental.quoteDeadlineMillis", RentalAgency.DEFAULT_QUOTE_DEADLINE_MILLIS);
+		IAgency agency = new RentalAgency(Arrays.asList(new ICarRentalCompany[]{hertzCompany, dockxCompany}), 
+				quotePolicy, quoteDeadlineMillis);
 		
 		// Locate RMI registry
 		Registry registry = null;
@@ -0,0 +1,73 @@
+package rental;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Running number of reservations per renter.
+ *
+ * Besides the count of every renter, the renters are grouped by their count in a
+ * sorted map, so the best customers are always found in the last group and never
+ * have to be computed from the reservation history. The companies keep it up to date
+ * (see ICarRentalCompany.addRenterStatistics).
+ */
+public class RenterStatistics {
+
+	private final Map<String, Integer> countByRenter = new HashMap<>();
+	private final TreeMap<Integer, Set<String>> rentersByCount = new TreeMap<>();
+
+	/*********
+	 * QUERY *
+	 *********/
+
+	synchronized int getNumberOfReservations(String renter) {
+		return countByRenter.getOrDefault(renter, 0);
+	}
+
+	/**
+	 * @return the renters with the highest number of reservations, or an empty set if
+	 * 		there are no reservations
+	 */
+	synchronized Set<String> getBestRenters() {
+		if (rentersByCount.isEmpty())
+			return new HashSet<>();
+		return new HashSet<>(rentersByCount.lastEntry().getValue());
+	}
+
+	/**********
+	 * UPDATE *
+	 **********/
+
+	synchronized void add(String renter, int delta) {
+		int oldCount = countByRenter.getOrDefault(renter, 0);
+		int newCount = oldCount + delta;
+		if (newCount < 0)
+			throw new IllegalStateException("Negative number of reservations for " + renter);
+
+		if (oldCount > 0) {
+			Set<String> renters = rentersByCount.get(oldCount);
+			renters.remove(renter);
+			if (renters.isEmpty())
+				rentersByCount.remove(oldCount);
+		}
+		if (newCount > 0) {
+			countByRenter.put(renter, newCount);
+			rentersByCount.computeIfAbsent(newCount, count -> new HashSet<>()).add(renter);
+		} else {
+			countByRenter.remove(renter);
+		}
+	}
+
+	void addAll(Map<String, Integer> counts) {
+		for (Map.Entry<String, Integer> entry : counts.entrySet())
+			add(entry.getKey(), entry.getValue());
+	}
+
+	void removeAll(Map<String, Integer> counts) {
+		for (Map.Entry<String, Integer> entry : counts.entrySet())
+			add(entry.getKey(), -entry.getValue());
+	}
+}
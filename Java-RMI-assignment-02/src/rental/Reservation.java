@@ -1,21 +1,31 @@
 package rental;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 public class Reservation extends Quote implements Serializable {
 
-    private int carId;
+    // written by writeObject in a compact format
+    private transient int carId;
     
     /***************
 	 * CONSTRUCTOR *
 	 ***************/
 
     Reservation(Quote quote, int carId) {
-    	super(quote.getCarRenter(), quote.getStartDate(), quote.getEndDate(), 
-    			quote.getRentalCompany(), quote.getCarType(), quote.getRentalPrice());
+    	super(quote.getCarRenterId(), quote.getStartDay(), quote.getEndDay(), 
+    			quote.getRentalCompanyId(), quote.getCarTypeId(), quote.getRentalPrice());
         this.carId = carId;
     }
-    
+
+    Reservation(int carRenterId, int startDay, int endDay, int rentalCompanyId, int carTypeId,
+    		double rentalPrice, int carId) {
+    	super(carRenterId, startDay, endDay, rentalCompanyId, carTypeId, rentalPrice);
+    	this.carId = carId;
+    }
+
     /******
      * ID *
      ******/
@@ -24,6 +34,20 @@ public class Reservation extends Quote implements Serializable {
     	return carId;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(carId);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        carId = in.readInt();
+    }
+    
     /*************
      * TO STRING *
      *************/
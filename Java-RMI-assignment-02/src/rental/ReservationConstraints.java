@@ -1,36 +1,48 @@
 package rental;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Date;
 
 public class ReservationConstraints implements Serializable  {
     
-    private Date startDate;
-    private Date endDate;
-    private String carType;
-    private String region;
+    // written by writeObject in a compact format
+    private transient int startDay;
+    private transient int endDay;
+    private transient String carType;
+    private transient String region;
 	
     public ReservationConstraints(Date start, Date end, String carType, String region){
-    	setStartDate(start);
-    	setEndDate(end);
+    	setStartDay(EpochDays.of(start));
+    	setEndDay(EpochDays.of(end));
     	setCarType(carType);
     	setRegion(region);
     }
     
     public Date getStartDate() {
-		return startDate;
+		return EpochDays.toDate(startDay);
 	}
     
-    private void setStartDate(Date startDate) {
-		this.startDate = startDate;
+    int getStartDay() {
+		return startDay;
+	}
+    
+    private void setStartDay(int startDay) {
+		this.startDay = startDay;
 	}
     
     public Date getEndDate() {
-		return endDate;
+		return EpochDays.toDate(endDay);
 	}
     
-	private void setEndDate(Date endDate) {
-		this.endDate = endDate;
+    int getEndDay() {
+		return endDay;
+	}
+    
+	private void setEndDay(int endDay) {
+		this.endDay = endDay;
 	}
 	
 	public String getCarType() {
@@ -49,15 +61,30 @@ public class ReservationConstraints implements Serializable  {
 		return this.region;
 	}
 	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(startDay);
+		out.writeInt(endDay);
+		CompactSerialization.writeName(out, carType);
+		CompactSerialization.writeName(out, region);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		startDay = in.readInt();
+		endDay = in.readInt();
+		carType = CompactSerialization.readName(in);
+		region = CompactSerialization.readName(in);
+	}
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((carType == null) ? 0 : carType.hashCode());
-		result = prime * result + ((endDate == null) ? 0 : endDate.hashCode());
+		result = prime * result + endDay;
 		result = prime * result + ((region == null) ? 0 : region.hashCode());
-		result = prime * result
-				+ ((startDate == null) ? 0 : startDate.hashCode());
+		result = prime * result + startDay;
 		return result;
 	}
 
@@ -75,20 +102,14 @@ public class ReservationConstraints implements Serializable  {
 				return false;
 		} else if (!carType.equals(other.carType))
 			return false;
-		if (endDate == null) {
-			if (other.endDate != null)
-				return false;
-		} else if (!endDate.equals(other.endDate))
+		if (endDay != other.endDay)
 			return false;
 		if (region == null) {
 			if (other.region != null)
 				return false;
 		} else if (!region.equals(other.region))
 			return false;
-		if (startDate == null) {
-			if (other.startDate != null)
-				return false;
-		} else if (!startDate.equals(other.startDate))
+		if (startDay != other.startDay)
 			return false;
 		return true;
 	}
@@ -0,0 +1,91 @@
+package rental;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Number of reservations per car type, year and month, based on the start date of
+ * the reservations.
+ *
+ * A company keeps its histogram up to date on every confirmation and cancellation
+ * and hands out a snapshot, so statistics over a year never have to scan the
+ * reservation history.
+ */
+public class ReservationHistogram implements Serializable {
+
+	// car type name -> year -> number of reservations per month (January first)
+	private final Map<String, Map<Integer, int[]>> countsByCarType = new HashMap<>();
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	ReservationHistogram() {
+	}
+
+	/**
+	 * @return a deep copy of this histogram
+	 */
+	synchronized ReservationHistogram snapshot() {
+		ReservationHistogram copy = new ReservationHistogram();
+		for (Map.Entry<String, Map<Integer, int[]>> carType : countsByCarType.entrySet()) {
+			Map<Integer, int[]> years = new HashMap<>();
+			for (Map.Entry<Integer, int[]> year : carType.getValue().entrySet())
+				years.put(year.getKey(), year.getValue().clone());
+			copy.countsByCarType.put(carType.getKey(), years);
+		}
+		return copy;
+	}
+
+	/*********
+	 * QUERY *
+	 *********/
+
+	/**
+	 * @return the names of the car types that have (had) at least one reservation
+	 */
+	public synchronized Set<String> getCarTypes() {
+		return new HashSet<>(countsByCarType.keySet());
+	}
+
+	public synchronized int getNumberOfReservations(String carType, int year) {
+		int[] months = getMonths(carType, year);
+		int total = 0;
+		if (months != null) {
+			for (int count : months)
+				total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @param month	the month, from 1 (January) to 12 (December)
+	 */
+	public synchronized int getNumberOfReservations(String carType, int year, int month) {
+		if (month < 1 || month > 12)
+			throw new IllegalArgumentException("Illegal month " + month);
+		int[] months = getMonths(carType, year);
+		return months == null ? 0 : months[month - 1];
+	}
+
+	private int[] getMonths(String carType, int year) {
+		Map<Integer, int[]> years = countsByCarType.get(carType);
+		return years == null ? null : years.get(year);
+	}
+
+	/**********
+	 * UPDATE *
+	 **********/
+
+	synchronized void add(String carType, int startDay, int delta) {
+		LocalDate start = LocalDate.ofEpochDay(startDay);
+		int[] months = countsByCarType
+				.computeIfAbsent(carType, type -> new HashMap<>())
+				.computeIfAbsent(start.getYear(), year -> new int[12]);
+		months[start.getMonthValue() - 1] += delta;
+	}
+}
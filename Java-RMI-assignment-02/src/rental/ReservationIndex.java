@@ -0,0 +1,256 @@
+package rental;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, sorted index of the reservations of a single car.
+ *
+ * Reservations are stored as closed [startDay, endDay] intervals of epoch days, packed
+ * in a single long with the start day in the high half. Since a car can never be
+ * booked twice in the same period the intervals do not overlap, which means that they
+ * are ordered both on start and on end day and an overlap query boils down to a
+ * single binary search.
+ *
+ * The reservations themselves are not kept as objects. Every field is stored in a
+ * primitive column, with the names kept as their id in the SymbolTable, and a
+ * Reservation is only materialized when it is handed out. This avoids an object, a
+ * set of name references and the header overhead per historic reservation.
+ *
+ * Updates return a new index, so a car can publish its reservations as a snapshot
+ * that readers use without locking.
+ */
+class ReservationIndex implements Serializable {
+
+	static final ReservationIndex EMPTY = new ReservationIndex(
+			new long[0], new int[0], new int[0], new int[0], new int[0], new double[0]);
+
+	private final long[] intervals;
+	private final int[] carIds;
+	private final int[] renterIds;
+	private final int[] companyIds;
+	private final int[] carTypeIds;
+	private final double[] prices;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	private ReservationIndex(long[] intervals, int[] carIds, int[] renterIds, int[] companyIds,
+			int[] carTypeIds, double[] prices) {
+		this.intervals = intervals;
+		this.carIds = carIds;
+		this.renterIds = renterIds;
+		this.companyIds = companyIds;
+		this.carTypeIds = carTypeIds;
+		this.prices = prices;
+	}
+
+	/*********
+	 * QUERY *
+	 *********/
+
+	/**
+	 * Checks whether any indexed reservation overlaps the given closed interval.
+	 *
+	 * @param startDay	first day of the period
+	 * @param endDay	last day of the period
+	 * @return true if at least one reservation overlaps the period
+	 */
+	boolean overlaps(int startDay, int endDay) {
+		int i = lastStartingAtOrBefore(endDay);
+		return i >= 0 && endDay(intervals[i]) >= startDay;
+	}
+
+	int size() {
+		return intervals.length;
+	}
+
+	/**
+	 * @return a new Reservation object for the reservation at the given position
+	 */
+	Reservation get(int index) {
+		long interval = intervals[index];
+		return new Reservation(renterIds[index], startDay(interval), endDay(interval),
+				companyIds[index], carTypeIds[index], prices[index], carIds[index]);
+	}
+
+	int renterIdAt(int index) {
+		return renterIds[index];
+	}
+
+	int startDayAt(int index) {
+		return startDay(intervals[index]);
+	}
+
+	/**
+	 * @return the index of the first reservation starting on or after the given day,
+	 * 		or size() if there is none
+	 */
+	int firstStartingAtOrAfter(int day) {
+		return day == Integer.MIN_VALUE ? 0 : lastStartingAtOrBefore(day - 1) + 1;
+	}
+
+	/**
+	 * Read-only view on the indexed reservations, ordered by start date.
+	 */
+	List<Reservation> asList() {
+		return new AbstractList<Reservation>() {
+			@Override
+			public Reservation get(int index) {
+				return ReservationIndex.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return intervals.length;
+			}
+		};
+	}
+
+	/**********
+	 * UPDATE *
+	 **********/
+
+	/**
+	 * @return a new index that also contains the given reservation
+	 * @throws IllegalArgumentException if the reservation overlaps an indexed one
+	 */
+	ReservationIndex with(Reservation res) {
+		if (overlaps(res.getStartDay(), res.getEndDay()))
+			throw new IllegalArgumentException("Reservation overlaps an existing reservation: " + res);
+
+		int pos = lastStartingAtOrBefore(res.getStartDay()) + 1;
+		long[] newIntervals = Arrays.copyOf(intervals, intervals.length + 1);
+		System.arraycopy(intervals, pos, newIntervals, pos + 1, intervals.length - pos);
+		newIntervals[pos] = interval(res.getStartDay(), res.getEndDay());
+		double[] newPrices = Arrays.copyOf(prices, prices.length + 1);
+		System.arraycopy(prices, pos, newPrices, pos + 1, prices.length - pos);
+		newPrices[pos] = res.getRentalPrice();
+		return new ReservationIndex(newIntervals,
+				inserted(carIds, pos, res.getCarId()),
+				inserted(renterIds, pos, res.getCarRenterId()),
+				inserted(companyIds, pos, res.getRentalCompanyId()),
+				inserted(carTypeIds, pos, res.getCarTypeId()),
+				newPrices);
+	}
+
+	/**
+	 * @return a new index without the given reservation, or this index if it does
+	 * 		not contain the reservation
+	 */
+	ReservationIndex without(Reservation res) {
+		int pos = lastStartingAtOrBefore(res.getStartDay());
+		// equals-method for Reservation is required!
+		if (pos < 0 || !get(pos).equals(res))
+			return this;
+
+		int size = intervals.length;
+		long[] newIntervals = new long[size - 1];
+		System.arraycopy(intervals, 0, newIntervals, 0, pos);
+		System.arraycopy(intervals, pos + 1, newIntervals, pos, size - pos - 1);
+		double[] newPrices = new double[size - 1];
+		System.arraycopy(prices, 0, newPrices, 0, pos);
+		System.arraycopy(prices, pos + 1, newPrices, pos, size - pos - 1);
+		return new ReservationIndex(newIntervals, removed(carIds, pos), removed(renterIds, pos),
+				removed(companyIds, pos), removed(carTypeIds, pos), newPrices);
+	}
+
+	/*****************
+	 * SERIALIZATION *
+	 *****************/
+
+	/**
+	 * Symbol ids are local to this JVM, so the index is written as its list of
+	 * reservations and rebuilt on the receiving side.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new SerializedForm(asList().toArray(new Reservation[0]));
+	}
+
+	private static class SerializedForm implements Serializable {
+
+		private final Reservation[] reservations;
+
+		SerializedForm(Reservation[] reservations) {
+			this.reservations = reservations;
+		}
+
+		/**
+		 * The reservations were written in index order, so the columns are filled in a
+		 * single pass instead of inserting the reservations one by one.
+		 */
+		private Object readResolve() throws ObjectStreamException {
+			int size = reservations.length;
+			long[] intervals = new long[size];
+			int[] carIds = new int[size];
+			int[] renterIds = new int[size];
+			int[] companyIds = new int[size];
+			int[] carTypeIds = new int[size];
+			double[] prices = new double[size];
+			for (int i = 0; i < size; i++) {
+				Reservation res = reservations[i];
+				if (i > 0 && res.getStartDay() <= endDay(intervals[i - 1]))
+					throw new InvalidObjectException("Reservations are not ordered or overlap: " + res);
+				intervals[i] = interval(res.getStartDay(), res.getEndDay());
+				carIds[i] = res.getCarId();
+				renterIds[i] = res.getCarRenterId();
+				companyIds[i] = res.getRentalCompanyId();
+				carTypeIds[i] = res.getCarTypeId();
+				prices[i] = res.getRentalPrice();
+			}
+			return size == 0 ? EMPTY : new ReservationIndex(intervals, carIds, renterIds, companyIds, carTypeIds, prices);
+		}
+	}
+
+	/***********
+	 * HELPERS *
+	 ***********/
+
+	private static long interval(int startDay, int endDay) {
+		return ((long) startDay << 32) | (endDay & 0xFFFFFFFFL);
+	}
+
+	private static int startDay(long interval) {
+		return (int) (interval >> 32);
+	}
+
+	private static int endDay(long interval) {
+		return (int) interval;
+	}
+
+	private static int[] inserted(int[] column, int pos, int value) {
+		int[] result = Arrays.copyOf(column, column.length + 1);
+		System.arraycopy(column, pos, result, pos + 1, column.length - pos);
+		result[pos] = value;
+		return result;
+	}
+
+	private static int[] removed(int[] column, int pos) {
+		int[] result = new int[column.length - 1];
+		System.arraycopy(column, 0, result, 0, pos);
+		System.arraycopy(column, pos + 1, result, pos, column.length - pos - 1);
+		return result;
+	}
+
+	/**
+	 * @return the index of the last interval starting on or before the given day,
+	 * 		or -1 if there is none
+	 */
+	private int lastStartingAtOrBefore(int day) {
+		int low = 0;
+		int high = intervals.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (startDay(intervals[mid]) <= day)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		return high;
+	}
+}
@@ -0,0 +1,67 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a paged reservation query.
+ *
+ * The continuation token is opaque to the caller: pass {@link #FIRST_PAGE} to get the
+ * first page and {@link #getNextToken()} to get the following one, until
+ * {@link #hasNext()} returns false.
+ */
+public class ReservationPage implements Serializable {
+
+	/**
+	 * Token of the first page of every query.
+	 */
+	public static final long FIRST_PAGE = ReservationPage.token(0, Integer.MIN_VALUE);
+	static final long NO_MORE_PAGES = -1;
+
+	private List<Reservation> reservations;
+	private long nextToken;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	ReservationPage(List<Reservation> reservations, long nextToken) {
+		this.reservations = reservations;
+		this.nextToken = nextToken;
+	}
+
+	public List<Reservation> getReservations() {
+		return reservations;
+	}
+
+	public long getNextToken() {
+		return nextToken;
+	}
+
+	public boolean hasNext() {
+		return nextToken != NO_MORE_PAGES;
+	}
+
+	/**********
+	 * TOKENS *
+	 **********/
+
+	/*
+	 * A token points at the first reservation starting on or after the given day of
+	 * the car with the given position. Reservations of a car are ordered on start day
+	 * and never start on the same day, so the position stays valid when other
+	 * reservations are added or cancelled in the meantime.
+	 */
+
+	static long token(int carPosition, int fromDay) {
+		return ((long) carPosition << 32) | (fromDay & 0xFFFFFFFFL);
+	}
+
+	static int carPosition(long token) {
+		return (int) (token >>> 32);
+	}
+
+	static int fromDay(long token) {
+		return (int) token;
+	}
+}
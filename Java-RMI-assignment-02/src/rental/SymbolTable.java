@@ -0,0 +1,83 @@
+package rental;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dictionary that maps names (renters, companies, car types) to dense int ids.
+ *
+ * Ids are handed out in order of first use and are never reused, so they can be
+ * stored in primitive columns and compared instead of the names themselves. Every
+ * name is kept exactly once, so all objects that refer to it share one instance. Ids
+ * are only meaningful within one JVM and must never be sent over the wire.
+ */
+final class SymbolTable {
+
+	static final SymbolTable NAMES = new SymbolTable();
+
+	static final int NO_ID = -1;
+	// id of a name that is not in the table, it never equals the id of a stored name
+	static final int UNKNOWN_ID = -2;
+
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	// written under the table's monitor, read without locking
+	private volatile String[] names = new String[64];
+	private int size;
+	private long characters;
+	private final LongAdder lookups = new LongAdder();
+
+	private SymbolTable() {
+	}
+
+	/**
+	 * @return the id of the given name, which is registered if it is new,
+	 * 		or NO_ID for null
+	 */
+	int idOf(String name) {
+		if (name == null)
+			return NO_ID;
+		lookups.increment();
+		Integer id = ids.get(name);
+		return id != null ? id : register(name);
+	}
+
+	/**
+	 * Looks up a name without registering it, to filter on a name that may never
+	 * have been used.
+	 *
+	 * @return the id of the given name, NO_ID for null or UNKNOWN_ID if the name is
+	 * 		not in the table
+	 */
+	int find(String name) {
+		if (name == null)
+			return NO_ID;
+		Integer id = ids.get(name);
+		return id != null ? id : UNKNOWN_ID;
+	}
+
+	/**
+	 * @return the name with the given id, or null for NO_ID
+	 */
+	String nameOf(int id) {
+		return id == NO_ID ? null : names[id];
+	}
+
+	private synchronized int register(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		if (size == names.length)
+			names = Arrays.copyOf(names, size * 2);
+		names[size] = name;
+		characters += name.length();
+		// publishing the id makes the name visible to every thread that reads it
+		ids.put(name, size);
+		return size++;
+	}
+
+	synchronized SymbolTableStatistics statistics() {
+		return new SymbolTableStatistics(size, characters, lookups.sum());
+	}
+}
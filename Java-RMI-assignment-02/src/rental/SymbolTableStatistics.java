@@ -0,0 +1,62 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the usage of the symbol table in which a server keeps the names of
+ * renters, companies and car types.
+ */
+public class SymbolTableStatistics implements Serializable {
+
+	private int symbols;
+	private long characters;
+	private long lookups;
+
+	/***************
+	 * CONSTRUCTOR *
+	 ***************/
+
+	SymbolTableStatistics(int symbols, long characters, long lookups) {
+		this.symbols = symbols;
+		this.characters = characters;
+		this.lookups = lookups;
+	}
+
+	/**
+	 * @return the number of distinct names in the table
+	 */
+	public int getSymbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return the total length of the distinct names in the table
+	 */
+	public long getCharacters() {
+		return characters;
+	}
+
+	/**
+	 * @return the number of times a name was looked up
+	 */
+	public long getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * @return the fraction of lookups that found a name that was already in the table
+	 */
+	public double getHitRatio() {
+		return lookups == 0 ? 0 : (double) (lookups - symbols) / lookups;
+	}
+
+	/*************
+	 * TO STRING *
+	 *************/
+
+	@Override
+	public String toString() {
+		return String.format("Symbol table [%d symbols, %d characters, %d lookups, hit ratio %.3f]",
+				getSymbols(), getCharacters(), getLookups(), getHitRatio());
+	}
+}